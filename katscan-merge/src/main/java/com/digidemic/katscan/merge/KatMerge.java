@@ -0,0 +1,610 @@
+/**
+ * KatScan v1.1.0 - https://github.com/Digidemic/kat-scan
+ * (c) 2024 DIGIDEMIC, LLC - All Rights Reserved
+ * KatScan developed by Adam Steinberg of DIGIDEMIC, LLC
+ * License: Apache License 2.0
+ *
+ * ====
+ *
+ * Copyright 2024 DIGIDEMIC, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.digidemic.katscan.merge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Merge KatScan files pulled off a device (every custom file and every day subdirectory) into a single stream in time order.
+ * Only one entry per file is held in memory at a time so log sets of any size can be merged and exported.
+ * Run from the command line (see usage below) or call KatMerge.merge() from other JVM code.
+ */
+public class KatMerge {
+
+    /*
+    Default values used in Config
+     */
+    private static final String DEFAULT_ENTRY_DATE_FORMAT_PATTERN = "yy-MM-dd_HH:mm:ss";
+    private static final String DEFAULT_SUB_DIRECTORY_DATE_FORMAT_PATTERN = "yyyy-MM-dd";
+    private static final String DEFAULT_TIME_INDEX_FILE_EXTENSION = ".idx";
+    private static final String DEFAULT_FRAME_DICTIONARY_FILE_EXTENSION = ".frames";
+    private static final int DEFAULT_READ_BUFFER_BYTES = 32 * 1024;     //Per file being merged, only the files of one day are open at a time
+    private static final int DEFAULT_WRITE_BUFFER_BYTES = 1024 * 1024;
+    private static final long MAX_TIME_ZONE_DIFFERENCE_MILLISECONDS = 26L * 60 * 60 * 1000;   //Between UTC-12 and UTC+14
+    private static final String JSON_TIME_FIELD = "{\"time\":\"";
+    private static final char FRAME_ID_MARKER = '@';
+    private static final String CHARSET = "UTF-8";
+    private static final String GZIP_FILE_EXTENSION = ".gz";
+
+    private static final String USAGE =
+            "Usage: katscan-merge [options] <file or directory>...\n" +
+            "Merges every KatScan file found into one stream in time order, stack traces kept together as one entry.\n" +
+            "Gzipped files are read as is. Day subdirectories outside of --from/--to are skipped without being read.\n" +
+            "Compact stack trace frames (Kat.Config.Exceptions.compactFrames) are written back out in full.\n" +
+            "\n" +
+            "  --from <date>          Only entries at or after this date (entry date pattern or milliseconds since epoch)\n" +
+            "  --to <date>            Only entries at or before this date (entry date pattern or milliseconds since epoch)\n" +
+            "  --grep <text>          Only entries containing this text\n" +
+            "  --regex <expression>   Only entries with a match for this regular expression\n" +
+            "  --label                Start every entry with the path of the file it came from\n" +
+            "  --out <file>           Write to this file instead of standard output, gzipped when it ends with .gz\n" +
+            "  --entry-pattern <p>    Kat.Config.Date.entryDateFormatPattern the files were written with (default \"" + DEFAULT_ENTRY_DATE_FORMAT_PATTERN + "\")\n" +
+            "  --day-pattern <p>      Kat.Config.Date.subdirectoryDateFormatPattern the files were written with (default \"" + DEFAULT_SUB_DIRECTORY_DATE_FORMAT_PATTERN + "\")\n";
+
+    /**
+     * Receives each merged entry in time order.
+     */
+    public interface EntryListener {
+        /**
+         * @param sourcePath path of the file the entry was read from
+         * @param time when the entry was written in milliseconds, entries without a readable date take the time of the entry before them in the same file
+         * @param entry the full entry as written, multiple lines for stack traces with compact frames written out in full
+         */
+        void onEntry(String sourcePath, long time, String entry) throws IOException;
+    }
+
+    /**
+     * Decides which entries are passed on.
+     */
+    public interface Filter {
+        boolean accept(String entry);
+    }
+
+    /**
+     * Merge every KatScan file in "inputs" (files or directories searched recursively) in time order.
+     * @param inputs files and directories to merge
+     * @param fromMilliseconds only entries written at or after this time, Long.MIN_VALUE for no limit
+     * @param toMilliseconds only entries written at or before this time, Long.MAX_VALUE for no limit
+     * @param filter only entries it accepts are passed on, null for every entry
+     * @param listener receives every merged entry in time order
+     * @return number of entries passed on
+     */
+    public static long merge(List<File> inputs, long fromMilliseconds, long toMilliseconds, Filter filter, EntryListener listener) throws IOException {
+        final List<File> files = new ArrayList<File>();
+        final List<Long> dayStarts = new ArrayList<Long>();
+        for (File input : inputs) {
+            collectFiles(input, fromMilliseconds, toMilliseconds, Long.MIN_VALUE, files, dayStarts);
+        }
+        List<Integer> unopened = new ArrayList<Integer>();  //Files in the order they are opened, each once the merge reaches the day of its subdirectory
+        for (int i = 0; i < files.size(); i++) {
+            unopened.add(i);
+        }
+        Collections.sort(unopened, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {  //Stable so files of the same day keep the order they were given in
+                return dayStarts.get(a).compareTo(dayStarts.get(b));
+            }
+        });
+        long resolution = entryDateResolution();
+        PriorityQueue<Source> queue = new PriorityQueue<Source>(11, Source.ORDER);
+        int opened = 0;
+        long passedOn = 0;
+        try {
+            while (true) {  //Always pass on the earliest entry any file has waiting, then refill from that file
+                while (opened < unopened.size() && (queue.isEmpty() || dayStarts.get(unopened.get(opened)) <= queue.peek().entryTime)) {  //Nothing in a day subdirectory was written before that day started
+                    int i = unopened.get(opened++);
+                    Source source = new Source(files.get(i), i, fromMilliseconds, toMilliseconds);
+                    if (source.next()) {
+                        queue.add(source);
+                    } else {
+                        source.close();
+                    }
+                }
+                if (queue.isEmpty()) {
+                    break;
+                }
+                Source source = queue.poll();
+                if (source.entryTime <= toMilliseconds && source.entryTime + resolution > fromMilliseconds && (filter == null || filter.accept(source.entry))) {
+                    listener.onEntry(source.path, source.entryTime, source.entry);
+                    passedOn++;
+                }
+                if (source.next()) {
+                    queue.add(source);
+                } else {
+                    source.close();
+                }
+            }
+        } finally {
+            for (Source source : queue) {
+                source.close();
+            }
+        }
+        return passedOn;
+    }
+
+    public static void main(String[] args){
+        try {
+            System.exit(run(args));
+        } catch(Exception e){
+            System.err.println("katscan-merge: " + e);
+            System.exit(1);
+        }
+    }
+
+    private static int run(String[] args) throws IOException {
+        String from = null;
+        String to = null;
+        String grep = null;
+        String regex = null;
+        String out = null;
+        boolean label = false;
+        List<File> inputs = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--label")) {
+                label = true;
+            } else if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.print(USAGE);
+                return 0;
+            } else if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    System.err.print("Missing value for " + arg + "\n" + USAGE);
+                    return 2;
+                }
+                String value = args[++i];
+                if (arg.equals("--from")) {
+                    from = value;
+                } else if (arg.equals("--to")) {
+                    to = value;
+                } else if (arg.equals("--grep")) {
+                    grep = value;
+                } else if (arg.equals("--regex")) {
+                    regex = value;
+                } else if (arg.equals("--out")) {
+                    out = value;
+                } else if (arg.equals("--entry-pattern")) {
+                    Config.entryDateFormatPattern = value;
+                } else if (arg.equals("--day-pattern")) {
+                    Config.subdirectoryDateFormatPattern = value;
+                } else {
+                    System.err.print("Unknown option " + arg + "\n" + USAGE);
+                    return 2;
+                }
+            } else {
+                inputs.add(new File(arg));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.print(USAGE);
+            return 2;
+        }
+        final String grepText = grep;
+        final Pattern regexPattern = (regex != null) ? Pattern.compile(regex) : null;
+        Filter filter = null;
+        if (grepText != null || regexPattern != null) {
+            filter = new Filter() {
+                @Override
+                public boolean accept(String entry) {
+                    return (grepText == null || entry.contains(grepText)) && (regexPattern == null || regexPattern.matcher(entry).find());
+                }
+            };
+        }
+        OutputStream outputStream = (out != null) ? new FileOutputStream(out) : System.out;
+        if (out != null && out.endsWith(GZIP_FILE_EXTENSION)) {
+            outputStream = new GZIPOutputStream(outputStream, DEFAULT_WRITE_BUFFER_BYTES);
+        }
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, CHARSET), DEFAULT_WRITE_BUFFER_BYTES);
+        final boolean labelEntries = label;
+        try {
+            merge(inputs, parseDate(from, Long.MIN_VALUE), parseDate(to, Long.MAX_VALUE), filter, new EntryListener() {
+                @Override
+                public void onEntry(String sourcePath, long time, String entry) throws IOException {
+                    if (labelEntries) {
+                        writer.write('[');
+                        writer.write(sourcePath);
+                        writer.write("] ");
+                    }
+                    writer.write(entry);
+                    writer.write('\n');
+                }
+            });
+        } finally {
+            writer.close();
+        }
+        return 0;
+    }
+
+    private static long parseDate(String date, long defaultTime){
+        if (date == null) {
+            return defaultTime;
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat(Config.entryDateFormatPattern);
+        dateFormat.setLenient(false);
+        ParsePosition position = new ParsePosition(0);
+        Date parsed = dateFormat.parse(date, position);
+        if (parsed != null && position.getIndex() == date.length()) {
+            return parsed.getTime();
+        }
+        try {
+            return Long.parseLong(date);
+        } catch(NumberFormatException e){
+            throw new IllegalArgumentException("\"" + date + "\" is neither \"" + Config.entryDateFormatPattern + "\" nor milliseconds since epoch");
+        }
+    }
+
+    private static void collectFiles(File input, long fromMilliseconds, long toMilliseconds, long dayStart, List<File> files, List<Long> dayStarts){  //Every KatScan file under "input" in a stable order with the start of the day subdirectory it is in (Long.MIN_VALUE when it is not in one), leaving out day subdirectories outside of the range and files that are not entries
+        if (input.isFile()) {
+            files.add(input);
+            dayStarts.add(dayStart);
+            return;
+        }
+        File[] children = input.listFiles();
+        if (children == null) {
+            return;
+        }
+        List<File> sorted = new ArrayList<File>();
+        Collections.addAll(sorted, children);
+        Collections.sort(sorted);
+        SimpleDateFormat subdirectoryDateFormat = new SimpleDateFormat(Config.subdirectoryDateFormatPattern);
+        subdirectoryDateFormat.setLenient(false);
+        for (File child : sorted) {
+            String name = child.getName();
+            if (name.startsWith(".") || name.endsWith(Config.timeIndexFileExtension) || name.endsWith(Config.frameDictionaryFileExtension)) {  //Hidden directories (the shipping spool), time index and frame dictionary sidecars
+                continue;
+            }
+            if (child.isDirectory()) {
+                ParsePosition position = new ParsePosition(0);
+                Date day = subdirectoryDateFormat.parse(name, position);
+                long childDayStart = dayStart;
+                if (day != null && position.getIndex() == name.length()) {
+                    Calendar dayEnd = Calendar.getInstance();
+                    dayEnd.setTime(day);
+                    dayEnd.add(Calendar.DAY_OF_MONTH, 1);
+                    if (dayEnd.getTimeInMillis() <= fromMilliseconds || day.getTime() > toMilliseconds) {
+                        continue;
+                    }
+                    childDayStart = day.getTime();
+                }
+                collectFiles(child, fromMilliseconds, toMilliseconds, childDayStart, files, dayStarts);
+            } else {
+                files.add(child);
+                dayStarts.add(dayStart);
+            }
+        }
+    }
+
+    private static long entryDateResolution(){  //Entry dates are truncated to the smallest unit in their pattern, an entry written at 12:00:00.900 reads back as 12:00:00
+        String pattern = Config.entryDateFormatPattern;
+        if (pattern.indexOf('S') >= 0) {
+            return 1;
+        } else if (pattern.indexOf('s') >= 0) {
+            return 1000;
+        } else if (pattern.indexOf('m') >= 0) {
+            return 60 * 1000;
+        }
+        return 60 * 60 * 1000;
+    }
+
+    private static class Source {   //One file being merged, holding only the entry it has waiting
+        private static final Comparator<Source> ORDER = new Comparator<Source>() {
+            @Override
+            public int compare(Source a, Source b) {    //Earliest entry first, files given first win ties so merging is repeatable
+                if (a.entryTime != b.entryTime) {
+                    return (a.entryTime < b.entryTime) ? -1 : 1;
+                }
+                return (a.order < b.order) ? -1 : ((a.order > b.order) ? 1 : 0);
+            }
+        };
+
+        private final String path;
+        private final int order;
+        private final BufferedReader reader;
+        private final DatePrefix datePrefix = new DatePrefix();
+        private Map<String, String> framesById = null;      //Read from the frame dictionary sidecar the first time a compact frame is found
+        private final StringBuilder text = new StringBuilder();
+        private String nextLine = null;
+        private long nextLineTime = -1;
+        private String entry = null;
+        private long entryTime = Long.MIN_VALUE;
+
+        private Source(File file, int order, long fromMilliseconds, long toMilliseconds) throws IOException {
+            this.path = file.getPath();
+            this.order = order;
+            InputStream in = new BufferedInputStream(new FileInputStream(file), DEFAULT_READ_BUFFER_BYTES);
+            in.mark(2);
+            boolean gzipped = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+            if (gzipped) {
+                in = new GZIPInputStream(in, DEFAULT_READ_BUFFER_BYTES);   //Read through the BufferedReader below, no need to buffer it again
+            } else {
+                in = skipWithTimeIndex(in, new File(path + Config.timeIndexFileExtension), fromMilliseconds, toMilliseconds);
+            }
+            reader = new BufferedReader(new InputStreamReader(in, CHARSET), DEFAULT_READ_BUFFER_BYTES);
+        }
+
+        private boolean next() throws IOException {     //Moves on to the next complete entry, false when there are none left
+            if (nextLine == null && !readNextLine()) {
+                return false;
+            }
+            while (nextLine.trim().length() == 0) {     //Skip line breaks between entries
+                if (!readNextLine()) {
+                    return false;
+                }
+            }
+            text.setLength(0);
+            text.append(nextLine);
+            int textLength = text.length();
+            if (nextLineTime != -1) {
+                entryTime = nextLineTime;
+            }   //Otherwise keep the time of the entry before it so it stays where it was written
+            while (readNextLine() && nextLineTime == -1) {
+                text.append('\n').append(nextLine);
+                if (nextLine.trim().length() > 0) {
+                    textLength = text.length();
+                }
+            }
+            text.setLength(textLength);
+            entry = text.toString();
+            return true;
+        }
+
+        private String expandFrame(String line) throws IOException {   //"[tabs]@[id]" written by Kat.Config.Exceptions.compactFrames back to "[tabs]at [frame]"
+            int tabsEnd = 0;
+            while (tabsEnd < line.length() && line.charAt(tabsEnd) == '\t') {
+                tabsEnd++;
+            }
+            if (tabsEnd == 0 || tabsEnd >= line.length() || line.charAt(tabsEnd) != FRAME_ID_MARKER) {
+                return line;
+            }
+            if (framesById == null) {
+                framesById = readFrameDictionary();
+            }
+            String frame = framesById.get(line.substring(tabsEnd + 1));
+            return (frame != null) ? line.substring(0, tabsEnd) + "at " + frame : line;
+        }
+
+        private Map<String, String> readFrameDictionary() throws IOException {     //"[id] [frame]" per line, next to the file it belongs to ("KatScan_log.txt.frames" for "KatScan_log.txt" or "KatScan_log.txt.gz")
+            Map<String, String> frames = new HashMap<String, String>();
+            File dictionaryFile = new File(path + Config.frameDictionaryFileExtension);
+            if (!dictionaryFile.isFile() && path.endsWith(GZIP_FILE_EXTENSION)) {
+                dictionaryFile = new File(path.substring(0, path.length() - GZIP_FILE_EXTENSION.length()) + Config.frameDictionaryFileExtension);
+            }
+            if (dictionaryFile.isFile()) {
+                BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(dictionaryFile), CHARSET));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        int space = line.indexOf(' ');
+                        if (space > 0) {
+                            frames.put(line.substring(0, space), line.substring(space + 1));
+                        }
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+            return frames;
+        }
+
+        private boolean readNextLine() throws IOException {
+            nextLine = reader.readLine();
+            nextLineTime = (nextLine != null) ? datePrefix.parse(nextLine) : -1;
+            if (nextLineTime == -1 && nextLine != null && nextLine.length() > 1 && nextLine.charAt(0) == '\t') {
+                nextLine = expandFrame(nextLine);
+            }
+            return nextLine != null;
+        }
+
+        private void close(){
+            try {
+                reader.close();
+            } catch(IOException ignored){
+            }
+        }
+    }
+
+    private static InputStream skipWithTimeIndex(InputStream in, File indexFile, long fromMilliseconds, long toMilliseconds) throws IOException {   //Use the time index sidecar written next to the file to only read the part of it covering the range
+        if (!indexFile.isFile() || (fromMilliseconds == Long.MIN_VALUE && toMilliseconds == Long.MAX_VALUE)) {
+            return in;
+        }
+        //Index buckets are milliseconds since epoch on the device while "--from"/"--to" and entry dates are read as wall clock times in this machine's time zone.
+        //Only seek as close as any time zone difference allows so the index never changes which entries are passed on, the entry dates decide the rest.
+        fromMilliseconds = (fromMilliseconds < Long.MIN_VALUE + MAX_TIME_ZONE_DIFFERENCE_MILLISECONDS) ? Long.MIN_VALUE : fromMilliseconds - MAX_TIME_ZONE_DIFFERENCE_MILLISECONDS;
+        toMilliseconds = (toMilliseconds > Long.MAX_VALUE - MAX_TIME_ZONE_DIFFERENCE_MILLISECONDS) ? Long.MAX_VALUE : toMilliseconds + MAX_TIME_ZONE_DIFFERENCE_MILLISECONDS;
+        long startOffset = 0;
+        long endOffset = -1;
+        BufferedReader br = new BufferedReader(new FileReader(indexFile));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                long bucket = Long.parseLong(line.substring(0, space));
+                long offset = Long.parseLong(line.substring(space + 1).trim());
+                if (bucket <= fromMilliseconds) {
+                    startOffset = offset;
+                } else if (bucket > toMilliseconds) {
+                    endOffset = offset;
+                    break;
+                }
+            }
+        } catch(NumberFormatException e){   //Not an index after all, read the whole file
+            startOffset = 0;
+            endOffset = -1;
+        } finally {
+            br.close();
+        }
+        long skipped = 0;
+        while (skipped < startOffset) {
+            long n = in.skip(startOffset - skipped);
+            if (n <= 0) {
+                break;
+            }
+            skipped += n;
+        }
+        return (endOffset < 0) ? in : new LimitedInputStream(in, endOffset - skipped);
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {     //Ends after "remaining" bytes
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long remaining){
+            super(in);
+            this.remaining = Math.max(0, remaining);
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    private static class DatePrefix {   //Reads the date an entry line starts with, reusing the last parsed date since consecutive lines are mostly written in the same second
+        private final SimpleDateFormat dateFormat;
+        private final int fixedLength;  //Length of every formatted date when the pattern is only numbers, 0 otherwise
+        private String lastPrefix = null;
+        private long lastTime = -1;
+
+        private DatePrefix(){
+            dateFormat = new SimpleDateFormat(Config.entryDateFormatPattern);
+            dateFormat.setLenient(false);
+            fixedLength = isNumericPattern(Config.entryDateFormatPattern) ? dateFormat.format(new Date()).length() : 0;
+        }
+
+        private long parse(String line){    //-1 when the line does not start with a date, lines of a stack trace for example
+            int start = line.startsWith(JSON_TIME_FIELD) ? JSON_TIME_FIELD.length() : 0;    //JSON lines start with their date field instead of being prefixed with it
+            if (line.length() <= start || line.charAt(0) == '\t') {
+                return -1;
+            }
+            if (fixedLength > 0) {
+                if (line.length() < start + fixedLength || !Character.isDigit(line.charAt(start))) {
+                    return -1;
+                }
+                if (lastPrefix != null && line.regionMatches(start, lastPrefix, 0, fixedLength)) {
+                    return lastTime;
+                }
+            }
+            ParsePosition position = new ParsePosition(start);
+            Date date = dateFormat.parse(line, position);
+            if (date == null || position.getErrorIndex() >= 0) {
+                return -1;
+            }
+            if (fixedLength > 0 && position.getIndex() - start == fixedLength) {
+                lastPrefix = line.substring(start, start + fixedLength);
+                lastTime = date.getTime();
+            }
+            return date.getTime();
+        }
+
+        private static boolean isNumericPattern(String pattern){
+            boolean quoted = false;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c == '\'') {
+                    quoted = !quoted;
+                } else if (!quoted && ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) && "yMdHhkKmsS".indexOf(c) < 0) {
+                    return false;
+                } else if (!quoted && c == 'M' && pattern.startsWith("MMM", i)) {   //Month names
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Must match the Kat.Config values the files were written with.
+     */
+    public static class Config {
+        public static String entryDateFormatPattern = DEFAULT_ENTRY_DATE_FORMAT_PATTERN;                //Kat.Config.Date.entryDateFormatPattern the files were written with. | Default: "yy-MM-dd_HH:mm:ss"
+        public static String subdirectoryDateFormatPattern = DEFAULT_SUB_DIRECTORY_DATE_FORMAT_PATTERN; //Kat.Config.Date.subdirectoryDateFormatPattern the files were written with, day subdirectories outside of the merged range are skipped. | Default: "yyyy-MM-dd"
+        public static String timeIndexFileExtension = DEFAULT_TIME_INDEX_FILE_EXTENSION;                //Kat.Config.Index.fileExtension the files were written with, used to only read the part of a file covering the merged range. | Default: ".idx"
+        public static String frameDictionaryFileExtension = DEFAULT_FRAME_DICTIONARY_FILE_EXTENSION;    //Kat.Config.Exceptions.frameDictionaryFileExtension the files were written with, used to write compact stack trace frames back out in full. | Default: ".frames"
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ * KatScan v1.1.0 - https://github.com/Digidemic/kat-scan
+ * (c) 2024 DIGIDEMIC, LLC - All Rights Reserved
+ * KatScan developed by Adam Steinberg of DIGIDEMIC, LLC
+ * License: Apache License 2.0
+ *
+ * ====
+ *
+ * Copyright 2024 DIGIDEMIC, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.digidemic.katscan.merge;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Merges a log set written on a device in UTC from machines in other time zones, with and without its time index sidecars.
+ * Fails (exit code 1) when the index changes which entries a --from/--to window passes on.
+ * Run by "./gradlew check" (or ":katscan-merge:mergeCheck" alone).
+ */
+public class KatMergeCheck {
+
+    private static final String[] TIME_ZONES = {"UTC", "America/Los_Angeles", "Asia/Tokyo", "Pacific/Kiritimati", "Etc/GMT+12"};
+    private static final String FROM = "26-09-01_10:00:00";
+    private static final String TO = "26-09-01_11:15:00";
+    private static final long EXPECTED_ENTRIES = 8;    //10:00 to 11:10, one every 10 minutes
+    private static final long ENTRY_EVERY_MILLISECONDS = 10 * 60 * 1000;
+    private static final long BUCKET_MILLISECONDS = 60 * 60 * 1000;
+
+    public static void main(String[] args){
+        try {
+            File rootDirectory = new File((args.length > 0) ? args[0] : System.getProperty("java.io.tmpdir") + File.separator + "katscan-merge-check");
+            File indexed = new File(rootDirectory, "indexed");
+            File unindexed = new File(rootDirectory, "unindexed");
+            writeDeviceLogs(indexed, true);
+            writeDeviceLogs(unindexed, false);
+            for (String timeZone : TIME_ZONES) {
+                TimeZone.setDefault(TimeZone.getTimeZone(timeZone));    //Entry dates and the window are read as wall clock times in this machine's time zone
+                SimpleDateFormat dateFormat = new SimpleDateFormat(KatMerge.Config.entryDateFormatPattern);
+                long from = dateFormat.parse(FROM).getTime();
+                long to = dateFormat.parse(TO).getTime();
+                long withIndex = KatMerge.merge(Collections.singletonList(indexed), from, to, null, new Discard());
+                long withoutIndex = KatMerge.merge(Collections.singletonList(unindexed), from, to, null, new Discard());
+                System.out.println(timeZone + " with index=" + withIndex + " without index=" + withoutIndex);
+                if (withIndex != EXPECTED_ENTRIES || withoutIndex != EXPECTED_ENTRIES) {
+                    throw new IllegalStateException("Merging from " + timeZone + " passed on " + withIndex + " entries with the time index and " + withoutIndex + " without it, expected " + EXPECTED_ENTRIES);
+                }
+            }
+            System.out.println("Merge check passed");
+            System.exit(0);
+        } catch(Exception e){
+            System.err.println("katscan-merge check: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void writeDeviceLogs(File directory, boolean withIndex) throws IOException {    //One day of entries as a device in UTC writes them, every 10 minutes with an index bucket per hour
+        File day = new File(directory, "2026-09-01");
+        if (!day.isDirectory() && !day.mkdirs()) {
+            throw new IOException("Could not create " + day);
+        }
+        SimpleDateFormat deviceDateFormat = new SimpleDateFormat(KatMerge.Config.entryDateFormatPattern);
+        deviceDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+        long dayStart = deviceDateFormat.parse("26-09-01_00:00:00", new ParsePosition(0)).getTime();
+        File logFile = new File(day, "KatScan_log.txt");
+        FileWriter log = new FileWriter(logFile);
+        FileWriter index = withIndex ? new FileWriter(logFile.getPath() + KatMerge.Config.timeIndexFileExtension) : null;
+        try {
+            long offset = 0;
+            for (long time = dayStart; time < dayStart + 24 * BUCKET_MILLISECONDS; time += ENTRY_EVERY_MILLISECONDS) {
+                if (index != null && time % BUCKET_MILLISECONDS == 0) {
+                    index.write(time + " " + offset + "\n");
+                }
+                String entry = deviceDateFormat.format(new Date(time)) + " - entry at " + time + "\n";
+                log.write(entry);
+                offset += entry.length();
+            }
+        } finally {
+            log.close();
+            if (index != null) {
+                index.close();
+            }
+        }
+    }
+
+    private static class Discard implements KatMerge.EntryListener {
+        @Override
+        public void onEntry(String sourcePath, long time, String entry){
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package android;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public final class Manifest {
+    public static final class permission {
+        public static final String WRITE_EXTERNAL_STORAGE = "android.permission.WRITE_EXTERNAL_STORAGE";
+    }
+}
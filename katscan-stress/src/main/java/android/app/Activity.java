@@ -0,0 +1,11 @@
+package android.app;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public class Activity extends Context {
+    public void requestPermissions(String[] permissions, int requestCode){
+    }
+}
@@ -0,0 +1,27 @@
+package android.content;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM, as a debuggable application with every permission granted.
+ */
+public class Context {
+    public ApplicationInfo getApplicationInfo(){
+        ApplicationInfo applicationInfo = new ApplicationInfo();
+        applicationInfo.flags = ApplicationInfo.FLAG_DEBUGGABLE;
+        return applicationInfo;
+    }
+
+    public Context getApplicationContext(){
+        return this;
+    }
+
+    public String getPackageName(){
+        return "com.digidemic.katscan.stress";
+    }
+
+    public int checkCallingOrSelfPermission(String permission){
+        return PackageManager.PERMISSION_GRANTED;
+    }
+}
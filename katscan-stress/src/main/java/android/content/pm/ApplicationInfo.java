@@ -0,0 +1,9 @@
+package android.content.pm;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public class ApplicationInfo {
+    public static final int FLAG_DEBUGGABLE = 1 << 1;
+    public int flags;
+}
@@ -0,0 +1,8 @@
+package android.content.pm;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public class PackageManager {
+    public static final int PERMISSION_GRANTED = 0;
+}
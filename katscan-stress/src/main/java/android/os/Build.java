@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public class Build {
+    public static class VERSION {
+        public static final int SDK_INT = 34;
+    }
+
+    public static class VERSION_CODES {
+        public static final int KITKAT = 19;
+        public static final int M = 23;
+    }
+}
@@ -0,0 +1,17 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM, never ticks.
+ */
+public abstract class CountDownTimer {
+    public CountDownTimer(long millisInFuture, long countDownInterval){
+    }
+
+    public abstract void onTick(long millisUntilFinished);
+
+    public abstract void onFinish();
+
+    public final synchronized CountDownTimer start(){
+        return this;
+    }
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM, Kat.Config.File.rootDirectoryPath is always set instead.
+ */
+public class Environment {
+    public static File getExternalStorageDirectory(){
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM, runs what is posted straight away.
+ */
+public class Handler {
+    public Handler(Looper looper){
+    }
+
+    public boolean post(Runnable runnable){
+        runnable.run();
+        return true;
+    }
+}
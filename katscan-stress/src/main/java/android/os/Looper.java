@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM.
+ */
+public class Looper {
+    public static Looper getMainLooper(){
+        return null;
+    }
+}
@@ -0,0 +1,26 @@
+package android.util;
+
+/**
+ * Stand-in for the Android class of the same name so Kat can run on a plain JVM, discards everything.
+ */
+public class Log {
+    public static int v(String tag, String message){
+        return 0;
+    }
+
+    public static int d(String tag, String message){
+        return 0;
+    }
+
+    public static int i(String tag, String message){
+        return 0;
+    }
+
+    public static int w(String tag, String message){
+        return 0;
+    }
+
+    public static int e(String tag, String message){
+        return 0;
+    }
+}
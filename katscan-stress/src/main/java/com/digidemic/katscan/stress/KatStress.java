@@ -0,0 +1,374 @@
+/**
+ * KatScan v1.1.0 - https://github.com/Digidemic/kat-scan
+ * (c) 2024 DIGIDEMIC, LLC - All Rights Reserved
+ * KatScan developed by Adam Steinberg of DIGIDEMIC, LLC
+ * License: Apache License 2.0
+ *
+ * ====
+ *
+ * Copyright 2024 DIGIDEMIC, LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.digidemic.katscan.stress;
+
+import android.content.Context;
+
+import com.digidemic.katscan.Kat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scans from 1 to 64 threads at once into several files, on the calling threads and in the background, then reads every file back.
+ * Fails (exit code 1) when an entry is torn or interleaved with another, a count goes backwards, an entry is lost or written out of
+ * the order its thread scanned it in, a bounded executor deadlocks, entries are written slower than "katscan.stress.minEntriesPerSecond",
+ * or adding threads drops the rate below "katscan.stress.minScalingRatio" of the single thread rate.
+ * Run by "./gradlew check" (or ":katscan-stress:stress" alone) against Kat.java itself, using stand-ins for the Android classes it needs.
+ */
+public class KatStress {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    private static final int FILES = 4;
+    private static final int ENTRIES_PER_ROUND = 16000;
+    private static final int EXCEPTION_EVERY = 97;                          //Every so often scan a stack trace instead, spanning many lines
+    private static final long BACKGROUND_TIMEOUT_MILLISECONDS = 60 * 1000;
+    private static final long DEFAULT_MIN_ENTRIES_PER_SECOND = 2000;         //Far below what a laptop manages, only a large regression should fail the build
+    private static final double DEFAULT_MIN_SCALING_RATIO = 0.5;            //Writes to a file are serialized so more threads cannot be faster, but they must not be much slower either
+    private static final Pattern ENTRY = Pattern.compile("^\\S+ - (\\d+) - (?:java\\.lang\\.RuntimeException: )?T(\\d+) #(\\d+)(?: payload-x*)?$");
+
+    private static int round = 0;
+
+    public static void main(String[] args){
+        try {
+            run(args);
+            System.exit(0);
+        } catch(Exception e){
+            System.err.println("katscan-stress: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void run(String[] args) throws Exception {
+        File rootDirectory = new File((args.length > 0) ? args[0] : System.getProperty("java.io.tmpdir") + File.separator + "katscan-stress");
+        deleteRecursively(rootDirectory);
+        long minEntriesPerSecond = Long.getLong("katscan.stress.minEntriesPerSecond", DEFAULT_MIN_ENTRIES_PER_SECOND);
+        double minScalingRatio = Double.parseDouble(System.getProperty("katscan.stress.minScalingRatio", String.valueOf(DEFAULT_MIN_SCALING_RATIO)));
+
+        Kat.Config.File.rootDirectoryPath = rootDirectory.getPath() + File.separator;
+        Kat.Config.File.writeKatScanEntriesToFileAndLog = false;
+        Kat.Config.File.writeCountWithEveryEntry = true;
+        Kat.Config.File.lineBreakBetweenEachEntry = true;
+        Kat.setup(new Context());
+        awaitSetup();
+
+        scanRound(4, "warm-up");    //Rates are compared with the single thread round so it must not pay for class loading and compiling
+        scaleThreads("inline", minEntriesPerSecond, minScalingRatio);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Kat.Config.executor = executor;
+        Kat.Config.createNewThreadForEachKatScanCall = true;
+        Kat.Config.maxPendingEntriesPerFile = 200;
+        Kat.Config.pendingEntriesPolicy = Kat.Config.PENDING_ENTRIES_POLICY.BLOCK;
+        scaleThreads("background", minEntriesPerSecond, minScalingRatio);
+        executor.shutdown();
+
+        scanFromBoundedExecutor();
+        dropWhenFull();
+        System.out.println("All stress rounds passed");
+    }
+
+    private static void scaleThreads(String mode, long minEntriesPerSecond, double minScalingRatio) throws Exception {  //One round per thread count, each rate compared with the floor and with the single thread rate
+        long singleThreadRate = -1;
+        for (int threads : THREAD_COUNTS) {
+            long entriesPerSecond = ENTRIES_PER_ROUND * TimeUnit.SECONDS.toNanos(1) / Math.max(1, scanRound(threads, mode));
+            if (entriesPerSecond < minEntriesPerSecond) {
+                throw new IllegalStateException(mode + " with " + threads + " threads wrote only " + entriesPerSecond + " entries per second, expected at least " + minEntriesPerSecond);
+            }
+            if (singleThreadRate < 0) {
+                singleThreadRate = entriesPerSecond;
+            } else if (entriesPerSecond < singleThreadRate * minScalingRatio) {
+                throw new IllegalStateException(mode + " with " + threads + " threads wrote " + entriesPerSecond + " entries per second, less than " + minScalingRatio + " of the " + singleThreadRate + " written with 1 thread");
+            }
+        }
+    }
+
+    private static long scanRound(int threads, String mode) throws Exception {     //Every thread scans its share of the entries into every file, then every file is read back. Returns how long writing them took in nanoseconds
+        final String prefix = "r" + (round++) + "f";
+        final int perThread = ENTRIES_PER_ROUND / threads;
+        final CountDownLatch go = new CountDownLatch(1);
+        List<Thread> scanning = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            Thread scanner = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        go.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    scanEntries(prefix, thread, perThread);
+                }
+            };
+            scanner.start();
+            scanning.add(scanner);
+        }
+        long start = System.nanoTime();
+        go.countDown();
+        for (Thread scanner : scanning) {
+            scanner.join();
+        }
+        long expected = (long) threads * perThread;
+        awaitEntries(prefix, expected);
+        long nanoseconds = System.nanoTime() - start;
+        verify(prefix, expected);
+        System.out.println(mode + " threads=" + threads + " entries=" + expected + " ms=" + TimeUnit.NANOSECONDS.toMillis(nanoseconds) + " rate=" + (expected * TimeUnit.SECONDS.toNanos(1) / Math.max(1, nanoseconds)) + "/s");
+        return nanoseconds;
+    }
+
+    private static void scanEntries(String prefix, int thread, int entries){
+        StringBuilder payload = new StringBuilder();
+        for (int i = 0; i < entries; i++) {
+            String fileName = prefix + ((i + thread) % FILES);
+            if (i % EXCEPTION_EVERY == 0) {
+                Kat.scan(fileName, new RuntimeException("T" + thread + " #" + i));
+            } else {
+                payload.setLength(0);
+                for (int x = 0; x < i % 50; x++) {
+                    payload.append('x');
+                }
+                Kat.scan(fileName, "T" + thread + " #" + i + " payload-" + payload);
+            }
+        }
+    }
+
+    private static void scanFromBoundedExecutor() throws Exception {   //The executor's own threads scan faster than there is room, with nobody else left to write the queues
+        final String prefix = "r" + (round++) + "f";
+        final int perThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Kat.Config.executor = executor;
+        Kat.Config.maxPendingEntriesPerFile = 50;
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (int t = 0; t < 2; t++) {
+            final int thread = t;
+            tasks.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    scanEntries(prefix, thread, perThread);
+                }
+            }));
+        }
+        try {
+            for (Future<?> task : tasks) {
+                task.get(BACKGROUND_TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+            }
+        } catch (java.util.concurrent.TimeoutException e) {
+            throw new IllegalStateException("Scanning from the threads of a bounded Kat.Config.executor never finished");
+        }
+        awaitEntries(prefix, 2 * perThread);
+        verify(prefix, 2 * perThread);
+        executor.shutdown();
+        System.out.println("bounded executor entries=" + (2 * perThread));
+    }
+
+    private static void dropWhenFull() throws Exception {  //Nothing is written until the gate opens, so all but "maxPendingEntriesPerFile" entries are dropped and noted
+        final CountDownLatch gate = new CountDownLatch(1);
+        Kat.Config.executor = new Executor() {
+            @Override
+            public void execute(final Runnable runnable) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            gate.await();
+                        } catch (InterruptedException ignored) {
+                        }
+                        runnable.run();
+                    }
+                }.start();
+            }
+        };
+        Kat.Config.maxPendingEntriesPerFile = 10;
+        Kat.Config.pendingEntriesPolicy = Kat.Config.PENDING_ENTRIES_POLICY.DROP;
+        String fileName = "r" + (round++) + "drop";
+        int scanned = 25;
+        for (int i = 0; i < scanned; i++) {
+            Kat.scan(fileName, "T0 #" + i);
+        }
+        gate.countDown();
+        Pattern droppedNote = Pattern.compile(".* (\\d+) entries were not written as more than Kat\\.Config\\.maxPendingEntriesPerFile .*");
+        long deadline = System.currentTimeMillis() + BACKGROUND_TIMEOUT_MILLISECONDS;
+        while (true) {
+            int written = 0;
+            int dropped = 0;
+            for (String line : readLines(fileName)) {
+                Matcher matcher = droppedNote.matcher(line);
+                if (matcher.matches()) {
+                    dropped += Integer.parseInt(matcher.group(1));
+                } else if (ENTRY.matcher(line).matches()) {
+                    written++;
+                }
+            }
+            if (written + dropped == scanned && written == Kat.Config.maxPendingEntriesPerFile) {
+                System.out.println("drop written=" + written + " dropped=" + dropped);
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("With DROP " + written + " entries were written and " + dropped + " noted as dropped of " + scanned + " scanned");
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    private static void awaitSetup() throws Exception {    //Entries scanned before setup finishes are held, the file appears once they are written
+        Kat.scan("setup", "ready");
+        long deadline = System.currentTimeMillis() + BACKGROUND_TIMEOUT_MILLISECONDS;
+        while (findFiles("setup").isEmpty()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Kat.setup() never finished");
+            }
+            Thread.sleep(20);
+        }
+    }
+
+    private static void awaitEntries(String prefix, long expected) throws Exception {  //Entries written in the background may still be on their way
+        long deadline = System.currentTimeMillis() + BACKGROUND_TIMEOUT_MILLISECONDS;
+        while (countEntries(prefix) < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+    }
+
+    private static long countEntries(String prefix) throws IOException {
+        long entries = 0;
+        for (int f = 0; f < FILES; f++) {
+            for (String line : readLines(prefix + f)) {
+                if (ENTRY.matcher(line).matches()) {
+                    entries++;
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void verify(String prefix, long expected) throws IOException {
+        long entries = 0;
+        for (int f = 0; f < FILES; f++) {
+            String fileName = prefix + f;
+            long lastCount = -1;
+            Map<String, Integer> lastEntryByThread = new HashMap<String, Integer>();
+            boolean inStackTrace = false;
+            boolean expectLineBreak = false;
+            for (String line : readLines(fileName)) {
+                if (line.length() == 0) {
+                    inStackTrace = false;
+                    expectLineBreak = false;
+                    continue;
+                }
+                if (line.startsWith("\tat ") || line.startsWith("\t...")) {
+                    if (!inStackTrace) {
+                        throw new IllegalStateException(fileName + ": stack trace frame outside of a stack trace: " + line);
+                    }
+                    continue;
+                }
+                if (expectLineBreak) {
+                    throw new IllegalStateException(fileName + ": no line break before: " + line);
+                }
+                Matcher matcher = ENTRY.matcher(line);
+                if (!matcher.matches()) {
+                    throw new IllegalStateException(fileName + ": torn entry: " + line);
+                }
+                long count = Long.parseLong(matcher.group(1));
+                if (count <= lastCount) {
+                    throw new IllegalStateException(fileName + ": count went from " + lastCount + " back to " + count);
+                }
+                lastCount = count;
+                int entry = Integer.parseInt(matcher.group(3));
+                Integer lastEntry = lastEntryByThread.put(matcher.group(2), entry);
+                if (lastEntry != null && lastEntry >= entry) {
+                    throw new IllegalStateException(fileName + ": thread T" + matcher.group(2) + " entry #" + entry + " written after #" + lastEntry);
+                }
+                inStackTrace = line.contains("Exception");
+                expectLineBreak = !inStackTrace;
+                entries++;
+            }
+        }
+        if (entries != expected) {
+            throw new IllegalStateException(prefix + "*: " + entries + " entries written of " + expected + " scanned");
+        }
+    }
+
+    private static List<String> readLines(String fileName) throws IOException {   //Every line written to the file, across every day subdirectory it was written into
+        List<String> lines = new ArrayList<String>();
+        for (File file : findFiles(fileName)) {
+            BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    lines.add(line);
+                }
+            } finally {
+                br.close();
+            }
+        }
+        return lines;
+    }
+
+    private static List<File> findFiles(String fileName){
+        List<File> files = new ArrayList<File>();
+        findFiles(new File(Kat.Config.File.getFullPathToMainDirectory()), fileName + Kat.Config.File.fileExtension, files);
+        Collections.sort(files);
+        return files;
+    }
+
+    private static void findFiles(File directory, String name, List<File> files){
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                findFiles(child, name, files);
+            } else if (child.getName().equals(name)) {
+                files.add(child);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file){
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -29,15 +29,48 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.CountDownTimer;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
-import java.io.StringWriter;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Write timestamped logs, exceptions, stack traces, messages, and other forms of text to a file for Android debugging purposes.
@@ -72,8 +105,26 @@ public class Kat {
     private static final String DEFAULT_KATSCAN_NAME_UNDERSCORE = "KatScan_";
     private static final String DEFAULT_MAIN_DIRECTORY_NAME = DEFAULT_KATSCAN_NAME_UNDERSCORE + DEFAULT_PACKAGE_NAME;
     private static final String DEFAULT_FILE_NAME = DEFAULT_KATSCAN_NAME_UNDERSCORE + "log";
-    private static final String DEFAULT_ROOT_DIRECTORY_PATH = (Environment.getExternalStorageDirectory() != null) ? Environment.getExternalStorageDirectory() + DIR_DELIMITER : DIR_DELIMITER;
     private static final String DEFAULT_FILE_EXTENSION = ".txt";
+    private static final String DEFAULT_TIME_INDEX_FILE_EXTENSION = ".idx";
+    private static final long DEFAULT_TIME_INDEX_BUCKET_MILLISECONDS = 60 * 1000;
+    private static final long DEFAULT_FOLLOW_MAX_BYTES_PER_POLL = 256 * 1024;
+    private static final String DEFAULT_TIMING_FILE_NAME = DEFAULT_KATSCAN_NAME_UNDERSCORE + "timing";
+    private static final long DEFAULT_SUMMARY_INTERVAL_MILLISECONDS = 60 * 1000;
+    private static final long DEFAULT_SLOW_THRESHOLD_MILLISECONDS = 1000;
+    private static final String DEFAULT_COUNTS_FILE_NAME = DEFAULT_KATSCAN_NAME_UNDERSCORE + "counts";
+    private static final int DEFAULT_MAX_ENTRIES_HELD_DURING_SETUP = 1000;
+    private static final int DEFAULT_MAX_PENDING_ENTRIES_PER_FILE = 10000;
+    private static final int DEFAULT_MAX_FRAMES_IN_DICTIONARY = 5000;
+    private static final String DEFAULT_FRAME_DICTIONARY_FILE_EXTENSION = ".frames";
+    private static final String DEFAULT_SPOOL_DIRECTORY_NAME = ".KatScan_spool";
+    private static final long DEFAULT_SHIPPING_INTERVAL_MILLISECONDS = 15 * 60 * 1000;
+    private static final int DEFAULT_SHIPPING_MAX_BATCH_BYTES = 256 * 1024;
+    private static final long DEFAULT_SHIPPING_MAX_BYTES_PER_SECOND = 64 * 1024;
+    private static final long DEFAULT_SHIPPING_MAX_SPOOL_BYTES = 8 * 1024 * 1024;
+    private static final long DEFAULT_SHIPPING_RETRY_BASE_MILLISECONDS = 30 * 1000;
+    private static final long DEFAULT_SHIPPING_RETRY_MAX_MILLISECONDS = 60 * 60 * 1000;
+    private static final String CHARSET = "UTF-8";
 
     /*
     Private variables
@@ -92,10 +143,14 @@ public class Kat {
     private static boolean userPermissionRequestFinished = false;
     private static long permissionRequestTimeCounter = 0;
     private static CountDownTimer permissionRequestTimer = null;
+    private static volatile String defaultRootDirectoryPath = null;
+    private static final Object FILE_WRITE_LOCK = new Object();
+    private static volatile SubdirectoryDate subdirectoryDate = null;
 
     /**
      * Setup only needs to be called once in the entire lifespan of the application and should be called before any Kat.Scan() call to initialize setup variables.
      * With this call, the method gets the application's package name, if in debug, and requests to the device for the "WRITE_EXTERNAL_STORAGE" permission if needed (only if application version is in debug and context must be an Activity instance to request permission for devices API 23 and higher).
+     * Only the bookkeeping is done on the calling thread, the rest is done on a background thread so setup stays off the application's startup path. Kat.scan() entries made before it finishes (including while the user is being asked for the permission) are held in memory and written once it has.
      * This method can be skipped if planning to call Config.enableKatScanRegardlessIfRunningInDebug(true); to allow running in released version of application, package name does not matter for folder structure, and application does not need to request the "WRITE_EXTERNAL_STORAGE".
      *
      * NOTE:
@@ -108,9 +163,8 @@ public class Kat {
     public static boolean setup(Context context){
         try{
             if(!setupComplete && context != null) {
-                applicationRunningInDebug = ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0); //If application running in debug
-                requestStoragePermissionIfNotAlreadyGranted(context);                                               //If context is Activity and device is API 23 or higher the application needs to request "Write" permission to be granted if not already
-                Config.File.mainDirectoryName = DEFAULT_KATSCAN_NAME_UNDERSCORE + getApplicationPackageName(context) + DIR_DELIMITER;   //Main directory name by default to be the current application's package name
+                applicationRunningInDebug = ((context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0); //If application running in debug, a single field read so it is known as soon as setup returns
+                WarmUp.start(context);                                                                              //Everything else setup needs is done on a background thread, Kat.scan() entries made in the meantime are held in memory until it finishes
                 setupComplete = true;                                                                               //No errors thrown during setup, set this as complete
             } else if(setupComplete && context != null && !properPermissionsGranted){                               //If setup is called more than once and application permission was previously granted. Maybe first time .setup was called was from a non-Activity context like a startup broadcast receiver. With this condition, try to get the write permission granted again if in debug.
                 requestStoragePermissionIfNotAlreadyGranted(context);
@@ -170,352 +224,2361 @@ public class Kat {
         start(String.valueOf(message), exception, String.valueOf(addEntryToThisFileName));
     }
 
-    private static void start(Object message, Exception exception, Object addEntryToThisFileName){
+    /**
+     * Start a structured entry to the default log/file (KatScan_log.txt) made of typed key-value pairs, finished by calling scan() on it.
+     * Ex: Kat.entry().kv("userId", userId).kv("latencyMs", latency).msg("Profile loaded").scan();
+     * Builders are pooled and values are stored unboxed. Nothing is formatted on the calling thread or at all when KatScan is disabled.
+     * The builder goes back to the pool once scanned and must not be used after calling scan().
+     * @return builder to add key-value pairs and a message to
+     */
+    public static EntryBuilder entry(){
+        return EntryBuilder.obtain(null);
+    }
+
+    /**
+     * Start a structured entry to the directory path/file passed in (/Network/requests.txt) made of typed key-value pairs, finished by calling scan() on it.
+     * Ex: Kat.entry("/Network/requests").kv("status", status).kv("latencyMs", latency).scan();
+     * Builders are pooled and values are stored unboxed. Nothing is formatted on the calling thread or at all when KatScan is disabled.
+     * The builder goes back to the pool once scanned and must not be used after calling scan().
+     * @param addEntryToThisFileName Directory path/file to write entry to starting from the defined root path.
+     * @return builder to add key-value pairs and a message to
+     */
+    public static EntryBuilder entry(Object addEntryToThisFileName){
+        return EntryBuilder.obtain(addEntryToThisFileName);
+    }
+
+    /**
+     * Structured entry of typed key-value pairs, a message, and an exception returned by Kat.entry().
+     * Written as "message | key=value key=value" or, with Config.StructuredEntry.format set to JSON_LINES, as one JSON object per line.
+     */
+    public static class EntryBuilder {
+        private static final String JSON_TIME_FIELD = "{\"time\":\"";
+        private static final int POOL_SIZE = 16;
+        private static final EntryBuilder[] pool = new EntryBuilder[POOL_SIZE];    //Guarded by itself
+        private static int pooled = 0;                                              //Guarded by "pool"
+        private static final byte LONG = 0;
+        private static final byte DOUBLE = 1;
+        private static final byte BOOLEAN = 2;
+        private static final byte OBJECT = 3;
+        private String[] keys = new String[8];
+        private byte[] types = new byte[8];
+        private long[] primitives = new long[8];    //Doubles are kept as their raw bits and booleans as 0 or 1 so nothing is boxed
+        private Object[] objects = new Object[8];
+        private int size = 0;
+        private int countIndex = -1;                //Where renderJson() left room for the count field
+        private Object message = null;
+        private Throwable exception = null;
+        private Object addEntryToThisFileName = null;
+        private Config.StructuredEntry.FORMAT format = Config.StructuredEntry.FORMAT.TEXT;  //Taken when scanned so a change to Config.StructuredEntry.format does not reach entries still waiting to be written
+
+        private EntryBuilder(){
+        }
+
+        private static EntryBuilder obtain(Object addEntryToThisFileName){
+            EntryBuilder builder = null;
+            synchronized (pool) {
+                if (pooled > 0) {
+                    builder = pool[--pooled];
+                    pool[pooled] = null;
+                }
+            }
+            if (builder == null) {
+                builder = new EntryBuilder();
+            }
+            builder.addEntryToThisFileName = addEntryToThisFileName;
+            return builder;
+        }
+
+        private static void recycleIfBuilder(Object message){  //For entries that are dropped instead of written, which is when the pool is needed most
+            if (message instanceof EntryBuilder) {
+                ((EntryBuilder) message).recycle();
+            }
+        }
+
+        private void recycle(){
+            for (int i = 0; i < size; i++) {
+                keys[i] = null;
+                objects[i] = null;
+            }
+            size = 0;
+            message = null;
+            exception = null;
+            addEntryToThisFileName = null;
+            synchronized (pool) {
+                if (pooled < POOL_SIZE) {
+                    pool[pooled++] = this;
+                }
+            }
+        }
+
+        /**
+         * Add a whole number value. Ints, shorts, and bytes are widened to long without boxing.
+         */
+        public EntryBuilder kv(String key, long value){
+            return add(key, LONG, value, null);
+        }
+
+        /**
+         * Add a decimal value. Floats are widened to double without boxing.
+         */
+        public EntryBuilder kv(String key, double value){
+            return add(key, DOUBLE, Double.doubleToRawLongBits(value), null);
+        }
+
+        /**
+         * Add a true or false value.
+         */
+        public EntryBuilder kv(String key, boolean value){
+            return add(key, BOOLEAN, value ? 1 : 0, null);
+        }
+
+        /**
+         * Add any other value, written using String.valueOf() and only when the entry is written.
+         */
+        public EntryBuilder kv(String key, Object value){
+            return add(key, OBJECT, 0, value);
+        }
+
+        /**
+         * Set the message of the entry, written using String.valueOf() and only when the entry is written.
+         */
+        public EntryBuilder msg(Object message){
+            this.message = message;
+            return this;
+        }
+
+        /**
+         * Add an exception to have its full stack trace written with the entry.
+         */
+        public EntryBuilder exception(Throwable exception){
+            this.exception = exception;
+            return this;
+        }
+
+        /**
+         * Write the entry. The builder goes back to the pool and must not be used afterwards.
+         */
+        public void scan(){
+            if (!katScanEnabled() && !WarmUp.isHolding()) { //Would not be written so do not spend anything on it
+                recycle();
+                return;
+            }
+            format = Config.StructuredEntry.format;
+            start(this, exception, addEntryToThisFileName);
+        }
+
+        private EntryBuilder add(String key, byte type, long primitive, Object object){
+            if (size == keys.length) {
+                int capacity = size * 2;
+                String[] largerKeys = new String[capacity];
+                byte[] largerTypes = new byte[capacity];
+                long[] largerPrimitives = new long[capacity];
+                Object[] largerObjects = new Object[capacity];
+                System.arraycopy(keys, 0, largerKeys, 0, size);
+                System.arraycopy(types, 0, largerTypes, 0, size);
+                System.arraycopy(primitives, 0, largerPrimitives, 0, size);
+                System.arraycopy(objects, 0, largerObjects, 0, size);
+                keys = largerKeys;
+                types = largerTypes;
+                primitives = largerPrimitives;
+                objects = largerObjects;
+            }
+            keys[size] = key;
+            types[size] = type;
+            primitives[size] = primitive;
+            objects[size] = object;
+            size++;
+            return this;
+        }
+
+        private void renderText(StringBuilder out){     //message | key=value key=value
+            if (message != null) {
+                out.append(String.valueOf(message));
+                if (size > 0) {
+                    out.append(" | ");
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    out.append(' ');
+                }
+                out.append(keys[i]).append('=');
+                appendValue(i, out, false);
+            }
+        }
+
+        private StringBuilder renderJson(String date, long time, Throwable exception){  //{"time":"...","timeMs":...,"count":...,"msg":"...","key":value,"exception":"..."}
+            StringBuilder out = new StringBuilder();
+            if (date != null && date.length() > 0) {
+                out.append(JSON_TIME_FIELD);
+                appendJsonString(date, out);
+                out.append("\",\"timeMs\":").append(time);
+            } else {
+                out.append("{\"timeMs\":").append(time);
+            }
+            countIndex = out.length();  //The count is only taken once the entry is being appended
+            if (message != null) {
+                out.append(",\"msg\":\"");
+                appendJsonString(String.valueOf(message), out);
+                out.append('"');
+            }
+            for (int i = 0; i < size; i++) {
+                out.append(",\"");
+                appendJsonString(String.valueOf(keys[i]), out);
+                out.append("\":");
+                appendValue(i, out, true);
+            }
+            if (exception != null) {
+                StringBuilder stackTrace = new StringBuilder();
+                StackTraceWriter.write(exception, stackTrace);
+                out.append(",\"exception\":\"");
+                appendJsonString(stackTrace, out);
+                out.append('"');
+            }
+            return out.append('}');
+        }
+
+        private void appendValue(int i, StringBuilder out, boolean json){
+            switch (types[i]) {
+                case LONG:
+                    out.append(primitives[i]);
+                    break;
+                case DOUBLE:
+                    double value = Double.longBitsToDouble(primitives[i]);
+                    if (json && (Double.isNaN(value) || Double.isInfinite(value))) {
+                        out.append("null");     //Not representable in JSON
+                    } else {
+                        out.append(value);
+                    }
+                    break;
+                case BOOLEAN:
+                    out.append(primitives[i] != 0);
+                    break;
+                default:
+                    if (json) {
+                        if (objects[i] == null) {
+                            out.append("null");
+                        } else {
+                            out.append('"');
+                            appendJsonString(String.valueOf(objects[i]), out);
+                            out.append('"');
+                        }
+                    } else {
+                        out.append(String.valueOf(objects[i]));
+                    }
+            }
+        }
+
+        private static void appendJsonString(CharSequence text, StringBuilder out){
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                switch (c) {
+                    case '"':
+                        out.append("\\\"");
+                        break;
+                    case '\\':
+                        out.append("\\\\");
+                        break;
+                    case '\n':
+                        out.append("\\n");
+                        break;
+                    case '\r':
+                        out.append("\\r");
+                        break;
+                    case '\t':
+                        out.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            String hex = Integer.toHexString(c);
+                            out.append("\\u");
+                            for (int pad = hex.length(); pad < 4; pad++) {
+                                out.append('0');
+                            }
+                            out.append(hex);
+                        } else {
+                            out.append(c);
+                        }
+                }
+            }
+        }
+    }
+
+    /**
+     * Start timing something without allocating anything. Pass the returned value to Kat.time(name, start) when it finishes.
+     * @return start time to pass to Kat.time(name, start)
+     */
+    public static long time(){
+        return System.nanoTime();
+    }
+
+    /**
+     * Record how long something named took since Kat.time() was called.
+     * Durations are added to an in memory histogram per name and written as a count, p50, p90, p99, and max summary to the timing file (KatScan_timing.txt) every Config.Timing.summaryIntervalMilliseconds.
+     * A single call taking longer than Config.Timing.slowThresholdMilliseconds is also written to the timing file on its own.
+     * @param name Name to group the duration under. Ex: "loadProfile"
+     * @param startNanoTime Value returned by Kat.time() when timing started.
+     * @return nanoseconds taken
+     */
+    public static long time(Object name, long startNanoTime){
+        long elapsedNanoTime = System.nanoTime() - startNanoTime;
+        Timing.record(name, elapsedNanoTime);
+        return elapsedNanoTime;
+    }
+
+    /**
+     * Start timing something named, call stop() on the returned Span when it finishes.
+     * Same as Kat.time() / Kat.time(name, start) but easier to pass around at the cost of allocating the Span.
+     * @param name Name to group the duration under. Ex: "loadProfile"
+     * @return Span to call stop() on when finished
+     */
+    public static Span span(Object name){
+        return new Span(name, System.nanoTime());
+    }
+
+    /**
+     * Count an event by one. Counts are kept in memory and written as a single summary line with every name's count and rate to the counts file (KatScan_counts.txt) every Config.Counting.summaryIntervalMilliseconds.
+     * @param name Name of the event being counted. Ex: "cache miss"
+     */
+    public static void count(Object name){
+        Counting.add(null, name, 1);
+    }
+
+    /**
+     * Count an event by the delta passed in. Counts are kept in memory and written as a single summary line with every name's count and rate to the counts file (KatScan_counts.txt) every Config.Counting.summaryIntervalMilliseconds.
+     * @param name Name of the event being counted. Ex: "bytes downloaded"
+     * @param delta Amount to add to the count.
+     */
+    public static void count(Object name, long delta){
+        Counting.add(null, name, delta);
+    }
+
+    /**
+     * Count an event by the delta passed in, with its summary line written into directory path/file passed in (/Network/counts.txt) every Config.Counting.summaryIntervalMilliseconds.
+     * @param addEntryToThisFileName Directory path/file to write the summary line to starting from the defined root path.
+     * @param name Name of the event being counted. Ex: "retry"
+     * @param delta Amount to add to the count.
+     */
+    public static void count(Object addEntryToThisFileName, Object name, long delta){
+        Counting.add(addEntryToThisFileName, name, delta);
+    }
+
+    /**
+     * Write the summaries of everything timed or counted since the last summary now instead of waiting for the next interval, such as before the application closes.
+     */
+    public static void flushSummaries(){
+        Timing.flush();
+        Counting.flush();
+    }
+
+    /**
+     * Upload every finished day of KatScan files to Config.Shipping.endpointUrl now instead of waiting for the next interval.
+     * Makes network requests so must not be called from the main thread.
+     * @return number of batches uploaded
+     */
+    public static int ship(){
+        if (Config.Shipping.endpointUrl != null) {  //Keep shipping every interval from now on, in case the endpoint was set after setup
+            Shipping.schedule();
+        }
+        return Shipping.ship();
+    }
+
+    /**
+     * Something being timed, returned by Kat.span(name).
+     */
+    public static class Span {
+        private final Object name;
+        private final long startNanoTime;
+
+        private Span(Object name, long startNanoTime){
+            this.name = name;
+            this.startNanoTime = startNanoTime;
+        }
+
+        /**
+         * Stop timing and record how long it took under the span's name. Should only be called once.
+         * @return nanoseconds taken
+         */
+        public long stop(){
+            return time(name, startNanoTime);
+        }
+    }
+
+    /**
+     * Read back entries of the default log/file (KatScan_log.txt) written between two points in time.
+     * Uses the time index sidecar file (see Config.Index) to seek straight to the requested range instead of reading the whole file.
+     * @param fromMilliseconds Start of the range (inclusive) in milliseconds since epoch.
+     * @param toMilliseconds End of the range (inclusive) in milliseconds since epoch.
+     * @param filter Only entries accepted by this filter are passed to the listener. Pass null to accept every entry.
+     * @param listener Receives each matching entry (including its date prefix and any multi-line stack trace) in file order.
+     * @return number of entries passed to the listener
+     */
+    public static int query(long fromMilliseconds, long toMilliseconds, Filter filter, EntryListener listener){
+        return query(null, fromMilliseconds, toMilliseconds, filter, listener);
+    }
+
+    /**
+     * Read back entries of the directory path/file passed in (/Error/MainActivityLog.txt) written between two points in time.
+     * When "addEntriesIntoSubdirectoryCreatedToday" is true, every day subdirectory the range covers is read in order.
+     * Uses the time index sidecar file (see Config.Index) to seek straight to the requested range instead of reading the whole file.
+     * @param fileName Directory path/file entries were written to, the same value passed to Kat.scan(). Pass null for the default file.
+     * @param fromMilliseconds Start of the range (inclusive) in milliseconds since epoch.
+     * @param toMilliseconds End of the range (inclusive) in milliseconds since epoch.
+     * @param filter Only entries accepted by this filter are passed to the listener. Pass null to accept every entry.
+     * @param listener Receives each matching entry (including its date prefix and any multi-line stack trace) in file order.
+     * @return number of entries passed to the listener
+     */
+    public static int query(Object fileName, long fromMilliseconds, long toMilliseconds, Filter filter, EntryListener listener){
+        int matched = 0;
+        try {
+            if(listener == null || fromMilliseconds > toMilliseconds){
+                return 0;
+            }
+            String name = (fileName != null) ? String.valueOf(fileName) : null;
+            for (String filePath : constructFilePaths(name, fromMilliseconds, toMilliseconds)) {
+                matched += TimeIndex.query(filePath, fromMilliseconds, toMilliseconds, filter, listener);
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+        return matched;
+    }
+
+    /**
+     * Follow the default log/file (KatScan_log.txt), handing every entry written to it from now on to the listener as it is written.
+     * @param listener Receives each new entry on the thread that wrote it. Keep onEntry() quick as writing the next entry waits for it.
+     * @return Follower to read the current offset from or stop following with
+     */
+    public static Follower follow(EntryListener listener){
+        return follow(null, -1, listener);
+    }
+
+    /**
+     * Follow the directory path/file passed in (/Error/MainActivityLog.txt), handing every entry written to it from now on to the listener as it is written.
+     * @param fileName Directory path/file entries are written to, the same value passed to Kat.scan(). Pass null for the default file.
+     * @param listener Receives each new entry on the thread that wrote it. Keep onEntry() quick as writing the next entry waits for it.
+     * @return Follower to read the current offset from or stop following with
+     */
+    public static Follower follow(Object fileName, EntryListener listener){
+        return follow(fileName, -1, listener);
+    }
+
+    /**
+     * Follow the directory path/file passed in (/Error/MainActivityLog.txt) starting from an offset in today's file.
+     * Entries already in the file after the offset are read first, then every entry written from now on is handed to the listener as it is written.
+     * To resume a follower that may have been following an earlier day's file, use Kat.follow(fileName, filePath, offset, listener) instead.
+     * @param fileName Directory path/file entries are written to, the same value passed to Kat.scan(). Pass null for the default file.
+     * @param offset Byte offset in today's file to start from, moved forward to the start of the next entry if it is not one. Pass 0 to start from the beginning or -1 to only receive new entries.
+     * @param listener Receives each entry in file order. Keep onEntry() quick as writing the next entry waits for it.
+     * @return Follower to read the current offset from or stop following with
+     */
+    public static Follower follow(Object fileName, long offset, EntryListener listener){
+        return follow(fileName, null, offset, listener);
+    }
+
+    /**
+     * Follow the directory path/file passed in (/Error/MainActivityLog.txt) resuming from where a previous follower stopped, its Follower.getFilePath() and Follower.getOffset().
+     * The rest of that file is read first, then today's file if it is a different one, then every entry written from now on is handed to the listener as it is written.
+     * @param fileName Directory path/file entries are written to, the same value passed to Kat.scan(). Pass null for the default file.
+     * @param filePath File the offset belongs to, returned by Follower.getFilePath(). Pass null for today's file.
+     * @param offset Byte offset in "filePath" to resume from, returned by Follower.getOffset(). Moved forward to the start of the next entry if it is not one.
+     * @param listener Receives each entry in file order. Keep onEntry() quick as writing the next entry waits for it.
+     * @return Follower to read the current offset from or stop following with
+     */
+    public static Follower follow(Object fileName, String filePath, long offset, EntryListener listener){
+        Follower follower = new Follower(fileName, filePath, offset, listener);
+        try {
+            while (follower.poll() > 0) {           //Catch up without holding up writers for the bulk of it
+            }
+            synchronized (FILE_WRITE_LOCK) {        //Read whatever was written in the meantime and start receiving entries from the writer with nothing missed in between
+                while (follower.poll() > 0) {
+                }
+                Follower.live.add(follower);
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+        return follower;
+    }
+
+    /**
+     * Reads entries from a KatScan file as it grows, either handed over by the writer as they are written (see Kat.follow()) or read from the file by calling poll().
+     * Only keeps the byte offset of the last entry handed over, never rereads what came before it, and reads at most Config.Follow.maxBytesPerPoll per poll() call.
+     */
+    public static class Follower {
+        private static final List<Follower> live = new CopyOnWriteArrayList<Follower>();
+        private final String fileName;
+        private final EntryListener listener;
+        private volatile String filePath;
+        private volatile long offset;
+        private boolean aligned = true;     //Guarded by "this", false until the offset passed in could be moved to the start of an entry
+        private final LinkedList<String> handedOver = new LinkedList<String>();    //Guarded by itself, entries the writer handed over that the listener has not been given yet
+        private boolean delivering = false;                                         //Guarded by "handedOver", only one thread gives the listener entries at a time so they stay in file order
+
+        /**
+         * Create a follower that only reads entries when poll() is called, such as for a file written to by another process.
+         * Use Kat.follow() instead to have entries written by this application handed over as they are written.
+         * @param fileName Directory path/file entries are written to, the same value passed to Kat.scan(). Pass null for the default file.
+         * @param offset Byte offset in today's file to start from, moved forward to the start of the next entry if it is not one. Pass 0 to start from the beginning or -1 to only read entries written from now on.
+         * @param listener Receives each entry in file order.
+         */
+        public Follower(Object fileName, long offset, EntryListener listener){
+            this(fileName, null, offset, listener);
+        }
+
+        /**
+         * Create a follower that only reads entries when poll() is called, resuming from where a previous follower stopped.
+         * @param fileName Directory path/file entries are written to, the same value passed to Kat.scan(). Pass null for the default file.
+         * @param filePath File the offset belongs to, returned by Follower.getFilePath(). Pass null for today's file.
+         * @param offset Byte offset in "filePath" to resume from, returned by Follower.getOffset(). Moved forward to the start of the next entry if it is not one.
+         * @param listener Receives each entry in file order.
+         */
+        public Follower(Object fileName, String filePath, long offset, EntryListener listener){
+            this.fileName = (fileName != null) ? String.valueOf(fileName) : null;
+            this.listener = listener;
+            String todaysFilePath = constructFilePath(this.fileName, System.currentTimeMillis());
+            if (filePath != null && !filePath.equals(todaysFilePath) && !new File(filePath).isFile()) {
+                filePath = null;    //Deleted since, nothing left to resume so start at the beginning of today's file
+                offset = 0;
+            }
+            this.filePath = (filePath != null) ? filePath : todaysFilePath;
+            long length = (this.filePath != null) ? new File(this.filePath).length() : 0;
+            if (offset < 0 || offset > length) {
+                this.offset = length;   //An offset past the end belongs to a file that has since been replaced
+            } else {
+                long aligned = alignToEntryStart(this.filePath, offset);
+                this.offset = (aligned >= 0) ? aligned : offset;
+                this.aligned = aligned >= 0;
+            }
+        }
+
+        private static long alignToEntryStart(String filePath, long offset){   //"offset" if an entry starts there, otherwise where the next one does so a partial entry is never handed over. -1 while the line "offset" is in is still being written.
+            if (offset <= 0 || filePath == null) {
+                return Math.max(0, offset);
+            }
+            EntryReader reader = null;
+            try {
+                reader = new EntryReader(filePath, offset - 1);
+                String previous = reader.lines.readLine();  //Reads to the end of whatever line "offset" is in, nothing but the line break when it starts one
+                if (previous == null) {
+                    return reader.lines.endsWithPartialLine ? -1 : offset;
+                }
+                long aligned = reader.lines.position;
+                while (reader.next() && reader.dateFormat != null && reader.entryTime < 0) {  //Rest of an entry (stack trace lines) that started before "offset"
+                    aligned = reader.entryEnd;
+                }
+                return aligned;
+            } catch(Exception e){
+                Error.log(e);
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            return offset;
+        }
+
+        /**
+         * Read entries written to the file since the last one handed to the listener, moving on to the next day's file once this one is finished.
+         * @return number of entries passed to the listener
+         */
+        public synchronized int poll(){
+            int delivered = 0;
+            EntryReader reader = null;
+            try {
+                if (filePath == null || !new File(filePath).isFile()) {
+                    return 0;
+                }
+                if (!aligned) {
+                    long alignedOffset = alignToEntryStart(filePath, offset);
+                    if (alignedOffset < 0) {
+                        return 0;
+                    }
+                    offset = alignedOffset;
+                    aligned = true;
+                }
+                long readFrom = offset;
+                reader = new EntryReader(filePath, readFrom);
+                while (reader.next()) {
+                    boolean lastEntry = reader.nextLine == null;
+                    if ((delivered > 0 && reader.entryEnd - readFrom > Config.Follow.maxBytesPerPoll) || (lastEntry && reader.lines.endsWithPartialLine)) {
+                        break;                      //Over the read limit, or the rest of the entry is still being written
+                    }
+                    offset = reader.entryEnd;
+                    delivered++;
+                    deliver(reader.entry);
+                }
+                if (delivered == 0 && reader.lines.reachedEnd && !reader.lines.endsWithPartialLine) {
+                    String todaysFilePath = constructFilePath(fileName, System.currentTimeMillis());
+                    if (todaysFilePath != null && !todaysFilePath.equals(filePath) && new File(todaysFilePath).isFile()) {
+                        filePath = todaysFilePath;
+                        offset = 0;
+                        reader.close();
+                        reader = null;
+                        return poll();
+                    }
+                }
+            } catch(Exception e){
+                Error.log(e);
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            return delivered;
+        }
+
+        /**
+         * Stop receiving entries from the writer. poll() can still be called afterwards.
+         */
+        public void stop(){
+            live.remove(this);
+        }
+
+        /**
+         * @return byte offset in getFilePath() just past the last entry handed to the listener, pass both to Kat.follow() to resume from here
+         */
+        public long getOffset(){
+            return offset;
+        }
+
+        /**
+         * @return full path of the file currently being followed, which changes each day when "addEntriesIntoSubdirectoryCreatedToday" is true. Save along with getOffset() to resume from.
+         */
+        public String getFilePath(){
+            return filePath;
+        }
+
+        private static List<Follower> written(String filePath, String entry, long time, long endOffset){   //Called by the writer holding FILE_WRITE_LOCK after an entry has been appended to "filePath", returns the followers to call deliverHandedOver() on once it is released
+            List<Follower> following = null;
+            for (Follower follower : live) {
+                try {
+                    if (!filePath.equals(follower.filePath)) {
+                        if (!filePath.equals(constructFilePath(follower.fileName, time))) {
+                            continue;
+                        }
+                        follower.filePath = filePath;   //Written to the next day's file
+                    }
+                    synchronized (follower.handedOver) {
+                        follower.offset = endOffset;
+                        follower.handedOver.add(entry);
+                    }
+                    if (following == null) {
+                        following = new ArrayList<Follower>(1);
+                    }
+                    following.add(follower);
+                } catch(Exception e){
+                    Error.log(e);
+                }
+            }
+            return following;
+        }
+
+        private void deliverHandedOver(){  //Called without holding FILE_WRITE_LOCK so a slow listener, or one that scans, never holds up writing
+            synchronized (handedOver) {
+                if (delivering) {
+                    return;     //The thread already delivering passes these on as well
+                }
+                delivering = true;
+            }
+            boolean emptied = false;
+            try {
+                while (true) {
+                    String entry;
+                    synchronized (handedOver) {
+                        entry = handedOver.poll();
+                        if (entry == null) {
+                            delivering = false;
+                            emptied = true;
+                            return;
+                        }
+                    }
+                    deliver(entry);
+                }
+            } finally {
+                if (!emptied) {
+                    synchronized (handedOver) {
+                        delivering = false;
+                    }
+                }
+            }
+        }
+
+        private void deliver(String entry){
+            try {
+                if (listener != null) {
+                    listener.onEntry(FrameDictionary.expand(filePath, entry));
+                }
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+    }
+
+    /**
+     * Receives entries read back from a KatScan file.
+     */
+    public interface EntryListener {
+        /**
+         * @param entry Full entry as written to the file, including its date prefix and any multi-line stack trace, with compact frames (Config.Exceptions.compactFrames) written out in full.
+         */
+        void onEntry(String entry);
+    }
+
+    /**
+     * Decides which entries read back from a KatScan file are passed on to an EntryListener.
+     */
+    public interface Filter {
+        /**
+         * @param entry Full entry as written to the file, including its date prefix and any multi-line stack trace, with compact frames (Config.Exceptions.compactFrames) written out in full.
+         * @return true to pass the entry on to the EntryListener
+         */
+        boolean accept(String entry);
+    }
+
+    private static void start(final Object message, final Throwable exception, final Object addEntryToThisFileName){
+        try {
+            final long time = System.currentTimeMillis();   //Entries keep the time they were scanned at no matter when they are written
+            if (WarmUp.hold(message, exception, addEntryToThisFileName, time)) {   //Kat.setup() is still finishing in the background
+                return;
+            }
+            boolean writeInBackground = Config.createNewThreadForEachKatScanCall || (exception != null && Config.Exceptions.renderOnBackgroundWriter);
+            if (!writeInBackground && !BackgroundWriter.isBusy()) {    //Nothing waiting to be written ahead of it
+                writeEntry(message, exception, addEntryToThisFileName, time, null);
+                return;
+            }
+            String filePath = constructFilePath(addEntryToThisFileName, time);
+            if (!BackgroundWriter.offer(message, exception, addEntryToThisFileName, time, filePath, writeInBackground, true)) {  //Write entry on the calling thread unless it has to wait behind entries to the same file still being written in the background
+                writeEntry(message, exception, addEntryToThisFileName, time, filePath);
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+    }
+
+    private static void writeEntry(Object message, Throwable exception, Object addEntryToThisFileName, long time, String filePath){  //"filePath" is null when it has not been worked out yet
+        try {
+            if (!setupComplete && !hasSetupIncompleteMessageDisplayed && Config.InternalErrors.showTheSetupErrorAsLogOnceIfNeeded) {
+                hasSetupIncompleteMessageDisplayed = true;
+                Error.log(KATSCAN_ERROR_PREFIX + "Kat.setup(context); has not been called properly and needs to only once for the lifespan of the application in order to work properly.\n" +
+                        "\tInitial setup variables have not been reassigned meaning everything will be saved in their KatScan default paths.\n" +
+                        "\tBecause of this, KatScan cannot determine if the application is running in debug or release mode. As a result, all Kat.scan() calls will not write to any files or logs until Kat.setup() is properly called (unless the debug override has been set true, Kat.Config.enableKatScanRegardlessIfRunningInDebug(true);\n" +
+                        "\tPlease call Kat.setup(context); in the OnCreate() of your main activity or just once in your project before performing your first Kat.scan() call.\n" +
+                        "\tKat.setup(context) can be called from other class instances like Services or Broadcast Receiver but will be unable to request " + WRITE_PERM + " permission if the device is API 23 or higher.\n");
+            }
+            if (katScanEnabled()) {
+                String date = getEntryDate(time);
+                if (filePath == null) {
+                    filePath = constructFilePath(addEntryToThisFileName, time);
+                }
+
+                if (message instanceof EntryBuilder && ((EntryBuilder) message).format == Config.StructuredEntry.FORMAT.JSON_LINES) {  //Date and count are fields of the JSON object instead of prefixing it
+                    StringBuilder json = ((EntryBuilder) message).renderJson(date, time, exception);
+                    writeEntryToFileOrLog(json, filePath, date, time, ((EntryBuilder) message).countIndex);
+                } else {
+                    FrameDictionary dictionary = (Config.Exceptions.compactFrames && exception != null && designatedWriteLocation(true) && properPermissionsGranted) ? FrameDictionary.forFile(filePath) : null;
+                    writeEntryToFileOrLog(constructEntryText(message, exception, dictionary), filePath, date, time, -1);
+                }
+            }
+        } catch(Exception e){
+            Error.log(e);
+        } finally {
+            if (message instanceof EntryBuilder) {
+                ((EntryBuilder) message).recycle();
+            }
+        }
+    }
+
+    private static CharSequence constructEntryText(Object message, Throwable exception, FrameDictionary dictionary){
+        try{
+            if(message != null || exception != null) {
+                StringBuilder txt = new StringBuilder();
+                if (message instanceof EntryBuilder) {
+                    ((EntryBuilder) message).renderText(txt);
+                } else if (message != null) {
+                    txt.append(String.valueOf(message));
+                }
+                if (message != null && exception != null) {
+                    txt.append("\n\t");
+                }
+                if (exception != null) {
+                    StackTraceWriter.write(exception, dictionary, txt);
+                }
+                return txt;
+            }
+        } catch (Exception e){
+            Error.log(e);
+        }
+        return null;
+    }
+
+    private static String getApplicationPackageName(Context context){
+        try {
+            String packageName = DEFAULT_PACKAGE_NAME;
+            if (context != null && context.getClass() != null && context.getClass().getPackage() != null && context.getClass().getPackage().getName() != null) {
+                packageName = context.getClass().getPackage().getName();
+            }
+            if (packageName == null || packageName.equals("")) {
+                packageName = DEFAULT_PACKAGE_NAME;
+            }
+            return packageName;
+        } catch(Exception e){
+            Error.log(e);
+            return DEFAULT_PACKAGE_NAME;
+        }
+    }
+
+    private static List<String> constructFilePaths(Object addEntryToThisFileName, long fromMilliseconds, long toMilliseconds){    //Every file path (one per existing day subdirectory if enabled) that entries written between both times could be in, oldest first
+        List<String> filePaths = new ArrayList<String>();
+        try {
+            if (!Config.File.addEntriesIntoSubdirectoryCreatedToday) {
+                String filePath = constructFilePath(addEntryToThisFileName, fromMilliseconds);
+                if (filePath != null) {
+                    filePaths.add(filePath);
+                }
+                return filePaths;
+            }
+            long fromDay = startOfDay(fromMilliseconds);
+            for (Map.Entry<Long, String> day : getDaySubdirectories().entrySet()) {    //Only look at days that have a directory rather than every day in the range
+                if (day.getKey() >= fromDay && day.getKey() <= toMilliseconds) {
+                    String filePath = constructFilePath(addEntryToThisFileName, day.getKey());
+                    if (filePath != null && !filePaths.contains(filePath)) {
+                        filePaths.add(filePath);
+                    }
+                }
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+        return filePaths;
+    }
+
+    private static TreeMap<Long, String> getDaySubdirectories(){   //Start of each day that has a subdirectory in the main directory and the subdirectory's name, oldest first
+        TreeMap<Long, String> days = new TreeMap<Long, String>();
+        try {
+            SimpleDateFormat subdirectoryDateFormat = new SimpleDateFormat(String.valueOf(Config.Date.subdirectoryDateFormatPattern));
+            subdirectoryDateFormat.setLenient(false);
+            String[] subdirectories = new File(Config.File.getFullPathToMainDirectory()).list();
+            if (subdirectories != null) {
+                for (String subdirectory : subdirectories) {
+                    ParsePosition position = new ParsePosition(0);
+                    Date day = subdirectoryDateFormat.parse(subdirectory, position);
+                    if (day != null && position.getIndex() == subdirectory.length()) {
+                        days.put(day.getTime(), subdirectory);
+                    }
+                }
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+        return days;
+    }
+
+    private static long startOfDay(long time){
+        Calendar day = Calendar.getInstance();
+        day.setTimeInMillis(time);
+        day.set(Calendar.HOUR_OF_DAY, 0);
+        day.set(Calendar.MINUTE, 0);
+        day.set(Calendar.SECOND, 0);
+        day.set(Calendar.MILLISECOND, 0);
+        return day.getTimeInMillis();
+    }
+
+    private static String constructFilePath(Object addEntryToThisFileName, long time){
+        try {
+            StringBuilder filePath = new StringBuilder();
+            filePath.append(String.valueOf(Config.File.getFullPathToMainDirectory()));
+            if(Config.File.addEntriesIntoSubdirectoryCreatedToday){
+                filePath.append(getSubdirectoryDate(time)).append(DIR_DELIMITER);
+            }
+            filePath.append(String.valueOf((addEntryToThisFileName != null) ? addEntryToThisFileName : Config.File.defaultFileName));
+            filePath.append(String.valueOf(Config.File.fileExtension));
+            return filePath.toString();
+        } catch(Exception e){
+            Error.log(e);
+            return null;
+        }
+    }
+
+    private static void writeEntryToFileOrLog(Object txt, String filePath, String date, long time, int jsonCountIndex){   //"jsonCountIndex" is -1 for text entries, which are prefixed with the date and count, otherwise where in the JSON object the count goes
+        try {
+            if(txt != null) {
+                StringBuilder entry = new StringBuilder();
+                boolean wroteEntryToFile = false;
+                List<Follower> following = null;
+                synchronized (FILE_WRITE_LOCK) {    //Counts are taken in the order entries are appended so they only ever go up, and entry offsets recorded in the time index are only valid if no other entry is appended in between
+                    String count = null;
+                    if(date != null && Config.File.writeCountWithEveryEntry) {
+                        entryCount = entryCount + 1;
+                        count = String.valueOf(entryCount);
+                    }
+                    if(date != null && jsonCountIndex < 0) {
+                        entry.append(date);
+                        if(count != null) {
+                            entry.append(String.valueOf(Config.spaceSeparator)).append(count);
+                        }
+                        entry.append(String.valueOf(Config.spaceSeparator));
+                    }
+                    if(txt instanceof CharSequence) {
+                        entry.append((CharSequence) txt);   //Stack traces are rendered into a StringBuilder, append without copying it into a String first
+                    } else {
+                        entry.append(String.valueOf(txt));
+                    }
+                    if(jsonCountIndex >= 0 && count != null) {
+                        entry.insert(jsonCountIndex, ",\"count\":" + count);
+                    }
+                    if(designatedWriteLocation(true) && properPermissionsGranted && filePath != null) {
+                        if (Storage.createFile(filePath)) {
+                            if (date != null && Config.Index.writeTimeIndexForEveryFile) {
+                                TimeIndex.record(filePath, time, new File(filePath).length());
+                            }
+                            FileWriter fw = new FileWriter(filePath, true);
+                            BufferedWriter bw = new BufferedWriter(fw);
+                            PrintWriter out = new PrintWriter(bw);
+                            String entryText = entry.toString();
+                            out.println(entryText);
+                            if(Config.File.lineBreakBetweenEachEntry) {
+                                out.println();      //In the same write so another thread's entry can never end up between an entry and its line break
+                            }
+                            out.flush();
+
+                            //Attempt to free up resources faster
+                            fw.close();
+                            bw.close();
+                            out.close();
+                            out = null;
+                            bw = null;
+                            fw = null;
+                            if (date != null && !Follower.live.isEmpty()) {
+                                following = Follower.written(filePath, entryText, time, new File(filePath).length());
+                            }
+                            wroteEntryToFile = true;
+                        } else {
+                            Error.log(KATSCAN_ERROR_PREFIX + "File could not be created or does not exist | filePath: " + filePath + " message: " + entry.toString());
+                        }
+                    }
+                }
+                if (following != null) {
+                    for (Follower follower : following) {
+                        follower.deliverHandedOver();
+                    }
+                }
+                if(designatedWriteLocation(false)) {
+                    executeConsolePrint(FrameDictionary.expand(filePath, entry.toString()));   //Frame ids only mean something next to the file's dictionary
+                    if(Config.File.lineBreakBetweenEachEntry) {
+                        executeConsolePrint("");
+                    }
+                }
+                if(wroteEntryToFile) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            Error.log(e);
+        }
+        try {
+            if (!properPermissionsGranted && !hasDeniedPermissionsMessageDisplayed && designatedWriteLocation(true)) {
+                hasDeniedPermissionsMessageDisplayed = true;
+                Error.log(KATSCAN_ERROR_PREFIX + "Required \"Storage\" permission has not been granted by the device.\n" +
+                        "\tKatScan only requires 1 permission,\n" +
+                        "\t" + FULL_WRITE_PERM + "\n" +
+                        "\twhich needs to be added to the application's AndroidManifest.xml file.\n" +
+                        "\tThis permission is needed to output Kat.scan() entries to a separate file.\n" +
+                        "\tIf this permission has already been added to the project manifest, make sure Kat.setup() is called just once in your project before your first Kat.scan() call.\n" +
+                        "\tIf on a device using API 23 or higher, this will trigger a popup asking the user to grant the \"Storage\" permission your app.\n" +
+                        "\tIf the \"Never ask again\" checkbox was checked and the permission was revoked you can also enable this permission by going to the app settings on your device and enabling it there.\n");
+            }
+            if (txt != null && filePath == null && !hasInvalidPathMessageDisplayed && designatedWriteLocation(true)) {
+                hasInvalidPathMessageDisplayed = true;
+                Error.log(KATSCAN_ERROR_PREFIX + "File path is null so a file could not be written");
+            }
+            if (txt != null && (Config.InternalErrors.showKatScanTextInLogsWhenFailureToWriteInFile || designatedWriteLocation(false))) {
+                if (!userPermissionRequestFinished && designatedWriteLocation(true)) {
+                    Error.log(KATSCAN_ERROR_PREFIX + "Currently requesting user to grant permission to use the " + WRITE_PERM + ".\n" +
+                            "\tBecause the following Kat.scan entry has been called during requesting time it will only be displaying in the log.");
+                }
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+    }
+
+    private static String exceptionToString(Throwable exception){
+        try{
+            if(exception != null){
+                StringBuilder exceptionStr = new StringBuilder();
+                StackTraceWriter.write(exception, exceptionStr);
+                return exceptionStr.toString();
+            }
+        } catch(Exception e){
+            Error.log(e.getMessage());  //Message passed in instead of error as will cause a stack overflow if exception is passed in.
+        }
+        return "";
+    }
+
+    private static String getEntryDate(){
+        return getEntryDate(System.currentTimeMillis());
+    }
+
+    private static String getEntryDate(long time){
+        try {
+            if (Config.Date.includePrefixedDateForEachFileEntry) {
+                return new SimpleDateFormat(String.valueOf(Config.Date.entryDateFormatPattern)).format(new Date(time));
+            }
+        } catch (Exception e){
+            Error.log(e);
+        }
+        return "";
+    }
+
+    private static String getSubdirectoryDate(long time){
+        try {
+            if (Config.File.addEntriesIntoSubdirectoryCreatedToday) {
+                String pattern = String.valueOf(Config.Date.subdirectoryDateFormatPattern);
+                SubdirectoryDate cached = subdirectoryDate;
+                if (cached != null && time >= cached.dayStart && time < cached.dayEnd && cached.pattern.equals(pattern)) {    //Same day as the last entry, skip formatting it again
+                    return cached.date;
+                }
+                String date = new SimpleDateFormat(pattern).format(new Date(time));
+                if (!pattern.matches(".*[HhkKmsSa].*")) {   //Only a pattern without a time of day names the same directory for the whole day
+                    long dayStart = startOfDay(time);
+                    Calendar dayEnd = Calendar.getInstance();
+                    dayEnd.setTimeInMillis(dayStart);
+                    dayEnd.add(Calendar.DAY_OF_MONTH, 1);
+                    subdirectoryDate = new SubdirectoryDate(pattern, dayStart, dayEnd.getTimeInMillis(), date);
+                }
+                return date;
+            }
+        } catch (Exception e){
+            Error.log(e);
+        }
+        return "";
+    }
+
+    private static class SubdirectoryDate {    //Day subdirectory name of the most recent entry, swapped as a whole so readers never see half of one
+        private final String pattern;
+        private final long dayStart;
+        private final long dayEnd;
+        private final String date;
+
+        private SubdirectoryDate(String pattern, long dayStart, long dayEnd, String date){
+            this.pattern = pattern;
+            this.dayStart = dayStart;
+            this.dayEnd = dayEnd;
+            this.date = date;
+        }
+    }
+
+    private static boolean requestStoragePermissionIfNotAlreadyGranted(Context context) {
+        try {
+            if (isWriteStoragePermissionGranted(context)) {
+                return true;
+            } else if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M && katScanEnabled() && !hasAlreadyAskedForPermission && designatedWriteLocation(true)) {
+                if (!hasRequestPermissionContextErrorDisplayed && (context == null || !(context instanceof Activity))) {
+                    hasRequestPermissionContextErrorDisplayed = true;
+                    Error.log(KATSCAN_ERROR_PREFIX + "Required \"Storage\" permission has not been granted by the device and cannot be requested with the \"context\" passed in.\n" +
+                            "\tAn active Activity needs to be passed in to Kat.setup() to request the " + WRITE_PERM + " permission which is needed to output Kat.scan() entries to a file.\n" +
+                            "\tAlso please make sure the following permission has bee added to your project's manifest xml:\n" +
+                            "\t" + FULL_WRITE_PERM + "\n");
+                }
+                if (context != null && context instanceof Activity) {
+                    hasAlreadyAskedForPermission = true;
+                    try {
+                        waitForUserPermissionRequestToFinish(context);
+                        ((Activity) context).requestPermissions(new String[]{android.Manifest.permission.WRITE_EXTERNAL_STORAGE}, Config.PermissionRequest.codeID);
+                    } catch (Exception e) {
+                        userPermissionRequestFinished = true;
+                        WarmUp.releaseIfReady();
+                    }
+                }
+                return false;
+            }
+        } catch(Exception e){
+            Error.log(e);
+        }
+        return false;
+    }
+
+    private static void waitForUserPermissionRequestToFinish(Context context){    //Instead of timer, could use the normal permission callback listener but do not want to add listeners to KatScan as it could interfere negatively with the rest of the application and its permission callback listeners.
+        try {
+            if (permissionRequestTimer == null && !userPermissionRequestFinished && context != null) {
+                permissionRequestTimer = new CountDownTimer(Config.PermissionRequest.millisecondsPerAcceptPermissionsCheck, 1000) {
+                    public void onTick(long millisUntilFinished) {
+                    }
+
+                    public void onFinish() {
+                        try {
+                            if (isWriteStoragePermissionGranted(context) || userPermissionRequestFinished) {
+                                userPermissionRequestFinished = true;
+                                permissionRequestTimer = null;
+                            } else {
+                                permissionRequestTimeCounter = permissionRequestTimeCounter + 1;
+                                if (!userPermissionRequestFinished && permissionRequestTimer != null && !properPermissionsGranted && context != null &&
+                                        Config.PermissionRequest.maxWaitTimeForUserToAcceptPermissions > permissionRequestTimeCounter * Config.PermissionRequest.millisecondsPerAcceptPermissionsCheck) {
+
+                                    permissionRequestTimer.start();
+                                } else {
+                                    userPermissionRequestFinished = true;
+                                    Error.log(KATSCAN_ERROR_PREFIX + WRITE_PERM + " permission was not granted or waiting for user input timed-out.\n" +
+                                            "\tKat.scan() calls cannot write to files because of it.\n" +
+                                            "\tTo grant the required permission needed either restart your application and grant when the permission request appears or find your project in your device's application list under your device's settings and enable it there.");
+                                }
+                            }
+                        } catch(Exception e){
+                            userPermissionRequestFinished = true;
+                            Error.log(e);
+                        }
+                        WarmUp.releaseIfReady();    //Entries held while waiting on the user can be written now that the permission request is over
+                    }
+                };
+                permissionRequestTimer.start();
+            }
+        } catch(Exception e){
+            userPermissionRequestFinished = true;
+            Error.log(e);
+            WarmUp.releaseIfReady();
+        }
+    }
+
+    private static boolean isWriteStoragePermissionGranted(Context context){
         try {
-            if (Config.createNewThreadForEachKatScanCall) { //Write entry using a new thread
-                new Thread(new Runnable() {
-                    @Override
-                    public void run() {
-                        writeEntry(message, exception, addEntryToThisFileName);
+            if (properPermissionsGranted) {
+                return properPermissionsGranted;
+            }
+            if (context != null && !properPermissionsGranted) {
+                properPermissionsGranted = context.checkCallingOrSelfPermission(android.Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
+                if (properPermissionsGranted) {
+                    userPermissionRequestFinished = true;
+                }
+                return properPermissionsGranted;
+            }
+        } catch(Exception e){
+            if(!hasWriteStoragePermissionGrantedErrorMessageDisplayed && Config.InternalErrors.showPermissionGrantedErrorIfOccurs) {
+                hasWriteStoragePermissionGrantedErrorMessageDisplayed = true;
+                Error.log(e);
+            }
+        }
+        return false;
+    }
+
+    private static String getDefaultRootDirectoryPath(){    //Resolved on first use instead of when the class loads as asking for external storage is not free
+        String path = defaultRootDirectoryPath;
+        if (path == null) {
+            try {
+                File externalStorageDirectory = Environment.getExternalStorageDirectory();
+                path = (externalStorageDirectory != null) ? externalStorageDirectory + DIR_DELIMITER : DIR_DELIMITER;
+            } catch(Exception e){
+                Error.log(e);
+                path = DIR_DELIMITER;
+            }
+            defaultRootDirectoryPath = path;
+        }
+        return path;
+    }
+
+    private static boolean katScanEnabled(){
+        return applicationRunningInDebug || enableKatScanRegardlessIfRunningInDebug;
+    }
+
+    private static Boolean designatedWriteLocation(Boolean writeKatScanEntriesToFileInsteadOfLogMustBeTrue) {
+        if(Config.File.writeKatScanEntriesToFileAndLog) {
+            return true;
+        }
+
+        if(writeKatScanEntriesToFileInsteadOfLogMustBeTrue) {
+            return Config.File.writeKatScanEntriesToFileInsteadOfLog;
+        } else {
+            return !Config.File.writeKatScanEntriesToFileInsteadOfLog;
+        }
+    }
+
+    private static void executeConsolePrint(Object message){
+        if(applicationRunningInDebug) {
+            String txt = String.valueOf(message);
+            if (Config.InternalErrors.showKatScanInternallyCaughtErrorsAsLogsOverPrintln) {
+                String tag = String.valueOf(Config.InternalErrors.logTag);
+                switch (Config.InternalErrors.loggingMethod) {
+                    case ERROR:
+                        Log.e(tag, txt);
+                        break;
+                    case WARNING:
+                        Log.w(tag, txt);
+                        break;
+                    case INFORMATION:
+                        Log.i(tag, txt);
+                        break;
+                    case DEBUG:
+                        Log.d(tag, txt);
+                        break;
+                    case VERBOSE:
+                        Log.v(tag, txt);
+                        break;
+                    default:
+                        Log.d(tag, txt);
+                }
+            } else {
+                System.err.println(txt);
+            }
+        }
+    }
+
+    private static class WarmUp {  //The part of Kat.setup() kept off the calling thread, entries scanned before it finishes are held in memory and written once it has
+        private static final List<PendingEntry> held = new ArrayList<PendingEntry>();
+        private static volatile boolean holding = false;        //Only changed holding "held"
+        private static boolean finished = false;                //Guarded by "held"
+        private static boolean permissionRequestPosted = false; //Guarded by "held"
+        private static int dropped = 0;                         //Guarded by "held"
+
+        private static void start(final Context context){
+            synchronized (held) {
+                holding = true;
+            }
+            final String mainDirectoryNameAtSetup = Config.File.mainDirectoryName;
+            Runnable warmUp = new Runnable() {
+                @Override
+                public void run() {
+                    warmUp(context, mainDirectoryNameAtSetup);
+                }
+            };
+            BackgroundWriter.execute(warmUp);
+        }
+
+        private static void warmUp(final Context context, String mainDirectoryNameAtSetup){
+            try {
+                String mainDirectoryName = DEFAULT_KATSCAN_NAME_UNDERSCORE + getApplicationPackageName(context) + DIR_DELIMITER;
+                if (Config.File.mainDirectoryName == mainDirectoryNameAtSetup) {    //Main directory name by default to be the current application's package name, unless the developer set their own since calling Kat.setup()
+                    Config.File.mainDirectoryName = mainDirectoryName;
+                }
+                if (Config.File.rootDirectoryPath == null) {
+                    Config.File.rootDirectoryPath = getDefaultRootDirectoryPath();
+                }
+                if (!isWriteStoragePermissionGranted(context)) {    //If context is Activity and device is API 23 or higher the application needs to request "Write" permission to be granted if not already, which has to be done from the main thread
+                    synchronized (held) {
+                        permissionRequestPosted = true;
+                    }
+                    new Handler(Looper.getMainLooper()).post(new Runnable() {
+                        @Override
+                        public void run() {
+                            requestStoragePermissionIfNotAlreadyGranted(context);
+                            synchronized (held) {
+                                permissionRequestPosted = false;
+                            }
+                            releaseIfReady();
+                        }
+                    });
+                } else if (katScanEnabled() && designatedWriteLocation(true)) {   //Create today's directory and the default file now rather than on the first Kat.scan() call
+                    String filePath = constructFilePath(null, System.currentTimeMillis());
+                    if (filePath != null) {
+                        Storage.createFile(filePath);
+                    }
+                }
+            } catch(Exception e){
+                Error.log(e);
+            }
+            synchronized (held) {
+                finished = true;
+            }
+            releaseIfReady();
+            if (Config.Shipping.endpointUrl != null) {  //Otherwise nothing wakes up every interval only to find there is nowhere to ship to
+                Shipping.schedule();
+            }
+        }
+
+        private static boolean hold(Object message, Throwable exception, Object addEntryToThisFileName, long time){   //true when the entry is being held until setup finishes
+            PendingEntry evicted = null;
+            synchronized (held) {
+                if (!holding) {
+                    return false;
+                }
+                if (held.size() >= Config.maxEntriesHeldDuringSetup) {
+                    evicted = held.remove(0);
+                    dropped++;
+                }
+                held.add(new PendingEntry(message, exception, addEntryToThisFileName, time, null));
+            }
+            if (evicted != null) {
+                EntryBuilder.recycleIfBuilder(evicted.message);
+            }
+            return true;
+        }
+
+        private static boolean isHolding(){
+            return holding;
+        }
+
+        private static void releaseIfReady(){  //Once setup and any permission request it started are over, hand every held entry to the background writer in the order they were scanned
+            synchronized (held) {
+                if (!holding || !finished || permissionRequestPosted || (hasAlreadyAskedForPermission && !userPermissionRequestFinished)) {
+                    return;
+                }
+                if (dropped > 0) {
+                    held.add(0, new PendingEntry(KATSCAN_ERROR_PREFIX + dropped + " entries scanned before Kat.setup() finished were not written as more than Kat.Config.maxEntriesHeldDuringSetup (" + Config.maxEntriesHeldDuringSetup + ") were held", null, null, System.currentTimeMillis(), null));
+                    dropped = 0;
+                }
+                BackgroundWriter.offerAll(held);
+                held.clear();
+                holding = false;
+            }
+        }
+    }
+
+    private static class BackgroundWriter {    //Writes entries on Config.executor, one at a time per file so entries to the same file are always written in the order they were scanned
+        private static final int MAX_ENTRIES_PER_RUN = 64;     //Hand the thread back to the executor between batches so one busy file does not keep it from the rest
+        private static final Map<String, FileQueue> queues = new HashMap<String, FileQueue>();    //Guarded by itself, only holds files with entries waiting or being written
+        private static final ThreadLocal<Boolean> writing = new ThreadLocal<Boolean>();           //Set while a thread writes a queue, it must never wait for room in one as it may be the thread that would make it
+        private static Executor defaultWriter = null;   //Guarded by BackgroundWriter.class, one long-lived thread used when Config.executor is null so scanning never starts a thread
+
+        private static boolean isBusy(){
+            synchronized (queues) {
+                return !queues.isEmpty();
+            }
+        }
+
+        private static boolean offer(Object message, Throwable exception, Object addEntryToThisFileName, long time, String filePath, boolean writeInBackground, boolean mayMakeRoom){  //true when the entry will be written in the background (or dropped), false when the caller should write it
+            while (true) {
+                FileQueue start = null;
+                FileQueue full = null;
+                synchronized (queues) {
+                    FileQueue queue = queues.get(String.valueOf(filePath));
+                    if (queue == null) {
+                        if (!writeInBackground) {
+                            return false;
+                        }
+                        queue = new FileQueue(String.valueOf(filePath));
+                        queues.put(queue.filePath, queue);
+                        queue.scheduled = true;
+                        start = queue;
+                    } else if (!queue.hasRoom()) {
+                        if (Config.pendingEntriesPolicy == Config.PENDING_ENTRIES_POLICY.DROP) {
+                            if (queue.droppedNotice == null) {  //Queued where the entries went missing and written as how many did once reached
+                                queue.droppedNotice = new PendingEntry(null, null, addEntryToThisFileName, time, filePath);
+                                queue.entries.add(queue.droppedNotice);
+                            }
+                            queue.dropped++;
+                            EntryBuilder.recycleIfBuilder(message);
+                            return true;
+                        }
+                        if (mayMakeRoom && writing.get() == null) {    //A thread writing a queue adds past the limit, it may be the one that would make room
+                            if (queue.beingWritten) {
+                                try {
+                                    queues.wait();  //Only ever for the entry another thread is writing right now, then look again as the queue may have been written out and replaced in the meantime
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    mayMakeRoom = false;
+                                }
+                                continue;
+                            }
+                            queue.beingWritten = true;  //Nobody is writing it, possibly because the executor's threads are all busy scanning, so make room here instead of waiting on them
+                            full = queue;
+                        }
+                    }
+                    if (full == null) {
+                        queue.entries.add(new PendingEntry(message, exception, addEntryToThisFileName, time, filePath));
+                    }
+                }
+                if (full != null) {
+                    full.write(true);
+                    continue;
+                }
+                if (start != null) {
+                    execute(start);
+                }
+                return true;
+            }
+        }
+
+        private static void offerAll(List<PendingEntry> entries){     //Written in the background ahead of anything scanned afterwards
+            for (PendingEntry entry : entries) {
+                offer(entry.message, entry.exception, entry.addEntryToThisFileName, entry.time, constructFilePath(entry.addEntryToThisFileName, entry.time), true, false);   //Held entries are already capped by Config.maxEntriesHeldDuringSetup, and only now is the file path known
+            }
+        }
+
+        private static synchronized Executor defaultWriter(){
+            if (defaultWriter == null) {
+                defaultWriter = singleDaemonThread("KatScan-writer");
+            }
+            return defaultWriter;
+        }
+
+        private static void execute(Runnable runnable){
+            if (!handOff(runnable)) {   //Executor shut down or full, write on the calling thread rather than lose the entries
+                runnable.run();
+            }
+        }
+
+        private static boolean handOff(Runnable runnable){     //false when the executor would not take it
+            Executor executor = (Config.executor != null) ? Config.executor : defaultWriter();
+            try {
+                executor.execute(runnable);
+                return true;
+            } catch(Exception e){
+                Error.log(e);
+                return false;
+            }
+        }
+
+        private static class FileQueue implements Runnable {
+            private final String filePath;
+            private final LinkedList<PendingEntry> entries = new LinkedList<PendingEntry>();   //Guarded by "queues"
+            private PendingEntry droppedNotice = null;                                          //Guarded by "queues"
+            private int dropped = 0;                                                            //Guarded by "queues", entries dropped since "droppedNotice" was queued
+            private boolean beingWritten = false;                                               //Guarded by "queues", only one thread writes a queue at a time so its entries stay in order
+            private boolean scheduled = false;                                                  //Guarded by "queues", run() is waiting on the executor
+
+            private FileQueue(String filePath){
+                this.filePath = filePath;
+            }
+
+            private boolean hasRoom(){
+                return Config.maxPendingEntriesPerFile <= 0 || entries.size() < Config.maxPendingEntriesPerFile;
+            }
+
+            @Override
+            public void run() {
+                synchronized (queues) {
+                    scheduled = false;
+                    if (beingWritten) {
+                        return;     //A scanning thread is making room in it, it hands the rest back to the executor when done
+                    }
+                    beingWritten = true;
+                }
+                write(false);
+            }
+
+            private void write(boolean untilRoom){     //Called with "beingWritten" set, writes up to MAX_ENTRIES_PER_RUN entries (or only until there is room again) then hands the rest back to the executor
+                while (true) {
+                    boolean released = false;
+                    writing.set(Boolean.TRUE);
+                    try {
+                        for (int written = 0; written < MAX_ENTRIES_PER_RUN; written++) {
+                            PendingEntry entry;
+                            int droppedHere = 0;
+                            synchronized (queues) {
+                                if (untilRoom && hasRoom()) {
+                                    break;
+                                }
+                                entry = entries.poll();
+                                if (entry == null) {
+                                    break;
+                                }
+                                if (entry == droppedNotice) {
+                                    droppedHere = dropped;
+                                    droppedNotice = null;
+                                    dropped = 0;
+                                }
+                                queues.notifyAll();
+                            }
+                            if (droppedHere > 0) {
+                                writeEntry(KATSCAN_ERROR_PREFIX + droppedHere + " entries were not written as more than Kat.Config.maxPendingEntriesPerFile (" + Config.maxPendingEntriesPerFile + ") were waiting to be written to this file", null, entry.addEntryToThisFileName, entry.time, entry.filePath);
+                            } else {
+                                writeEntry(entry.message, entry.exception, entry.addEntryToThisFileName, entry.time, entry.filePath);
+                            }
+                        }
+                        synchronized (queues) {
+                            beingWritten = false;
+                            released = true;
+                            queues.notifyAll();
+                            if (entries.isEmpty()) {
+                                if (queues.get(filePath) == this) {
+                                    queues.remove(filePath);
+                                }
+                                return;
+                            }
+                            if (scheduled) {
+                                return;     //A run already waiting on the executor carries on
+                            }
+                            scheduled = true;
+                        }
+                    } finally {
+                        writing.remove();
+                        if (!released) {
+                            synchronized (queues) {
+                                beingWritten = false;
+                                queues.notifyAll();
+                            }
+                        }
+                    }
+                    if (handOff(this)) {
+                        return;
+                    }
+                    synchronized (queues) {     //The executor would not take it, carry on here in a loop instead of a new stack frame per batch
+                        scheduled = false;
+                        if (beingWritten) {
+                            return;
+                        }
+                        beingWritten = true;
                     }
-                }).start();
-            } else {                                        //Write entry not using a new thread
-                writeEntry(message, exception, addEntryToThisFileName);
+                    untilRoom = false;
+                }
             }
-        } catch(Exception e){
-            Error.log(e);
         }
     }
 
-    private static void writeEntry(Object message, Exception exception, Object addEntryToThisFileName){
-        try {
-            if (!setupComplete && !hasSetupIncompleteMessageDisplayed && Config.InternalErrors.showTheSetupErrorAsLogOnceIfNeeded) {
-                hasSetupIncompleteMessageDisplayed = true;
-                Error.log(KATSCAN_ERROR_PREFIX + "Kat.setup(context); has not been called properly and needs to only once for the lifespan of the application in order to work properly.\n" +
-                        "\tInitial setup variables have not been reassigned meaning everything will be saved in their KatScan default paths.\n" +
-                        "\tBecause of this, KatScan cannot determine if the application is running in debug or release mode. As a result, all Kat.scan() calls will not write to any files or logs until Kat.setup() is properly called (unless the debug override has been set true, Kat.Config.enableKatScanRegardlessIfRunningInDebug(true);\n" +
-                        "\tPlease call Kat.setup(context); in the OnCreate() of your main activity or just once in your project before performing your first Kat.scan() call.\n" +
-                        "\tKat.setup(context) can be called from other class instances like Services or Broadcast Receiver but will be unable to request " + WRITE_PERM + " permission if the device is API 23 or higher.\n");
+    private static class PendingEntry {    //Everything needed to write an entry later, the exception is kept as is and only rendered when written
+        private final Object message;
+        private final Throwable exception;
+        private final Object addEntryToThisFileName;
+        private final long time;
+        private final String filePath;  //Worked out when scanned so the writer does not do it again, null when it is not known yet
+
+        private PendingEntry(Object message, Throwable exception, Object addEntryToThisFileName, long time, String filePath){
+            this.message = message;
+            this.exception = exception;
+            this.addEntryToThisFileName = addEntryToThisFileName;
+            this.time = time;
+            this.filePath = filePath;
+        }
+    }
+
+    private static class FrameDictionary {  //"[id] [frame]" sidecar next to a Kat.scan() file so a stack trace frame is written in full once and as "@[id]" in every trace after that
+        private static final char ID_MARKER = '@';
+        private static final int CACHED_DICTIONARIES = 4;
+        private static final Map<String, FrameDictionary> dictionaries = new LinkedHashMap<String, FrameDictionary>(CACHED_DICTIONARIES * 2, 0.75f, true) {    //Guarded by itself, the most recently used files only
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FrameDictionary> eldest) {
+                return size() > CACHED_DICTIONARIES;
             }
-            if (katScanEnabled()) {
-                if(Config.File.writeCountWithEveryEntry) {
-                    entryCount = entryCount + 1;
+        };
+        private final String filePath;
+        private final String dictionaryFilePath;
+        private final Map<StackTraceElement, String> idsByElement = new HashMap<StackTraceElement, String>();  //Skips building the frame's text for frames already seen
+        private final Map<String, String> idsByFrame = new HashMap<String, String>();
+        private final Map<String, String> framesById = new HashMap<String, String>();
+        private int nextId = 0;
+        private long loadedLength = 0;
+
+        private FrameDictionary(String filePath){
+            this.filePath = filePath;
+            this.dictionaryFilePath = filePath + String.valueOf(Config.Exceptions.frameDictionaryFileExtension);
+        }
+
+        private static FrameDictionary forFile(String filePath){
+            if (filePath == null) {
+                return null;
+            }
+            synchronized (dictionaries) {
+                FrameDictionary dictionary = dictionaries.get(filePath);
+                if (dictionary == null) {
+                    dictionary = new FrameDictionary(filePath);
+                    dictionaries.put(filePath, dictionary);
                 }
+                return dictionary;
+            }
+        }
 
-                String date = getEntryDate();
-                String filePath = constructFilePath(addEntryToThisFileName);
+        private synchronized String[] ids(StackTraceElement[] trace, int count){   //Id of each of the first "count" frames (null for frames to write in full), saving new frames to the sidecar before returning so it has them before any entry using them is written
+            String[] ids = new String[count];
+            try {
+                File entryFile = new File(filePath);
+                File dictionaryFile = new File(dictionaryFilePath);
+                if (idsByFrame.isEmpty() && (!entryFile.isFile() || entryFile.length() == 0)) {  //File was just created (or emptied) so whatever dictionary is left over no longer belongs to it
+                    dictionaryFile.delete();
+                    reset();
+                } else if (dictionaryFile.length() != loadedLength) {    //Deleted, or added to by another process
+                    load();
+                }
+                StringBuilder added = null;
+                for (int i = 0; i < count; i++) {
+                    String id = idsByElement.get(trace[i]);
+                    if (id == null) {
+                        String frame = String.valueOf(trace[i]);
+                        id = idsByFrame.get(frame);
+                        if (id == null) {
+                            if (idsByFrame.size() >= Config.Exceptions.maxFramesInDictionary) {
+                                continue;   //Written in full
+                            }
+                            id = Integer.toString(nextId++, Character.MAX_RADIX);
+                            add(id, frame);
+                            if (added == null) {
+                                added = new StringBuilder();
+                            }
+                            added.append(id).append(' ').append(frame).append('\n');
+                        }
+                        idsByElement.put(trace[i], id);
+                    }
+                    ids[i] = id;
+                }
+                if (added != null) {
+                    FileWriter fw = new FileWriter(dictionaryFilePath, true);
+                    try {
+                        fw.write(added.toString());
+                    } finally {
+                        fw.close();
+                    }
+                    loadedLength = dictionaryFile.length();
+                }
+            } catch(Exception e){   //Write the whole trace in full rather than refer to frames that may not have been saved
+                Error.log(e);
+                reset();
+                return null;
+            }
+            return ids;
+        }
 
-                writeEntryToFileOrLog(constructEntryText(message, exception), filePath, date);
+        private synchronized String frame(String id){
+            String frame = framesById.get(id);
+            if (frame == null && new File(dictionaryFilePath).length() != loadedLength) {   //Written by another process since last read
+                load();
+                frame = framesById.get(id);
+            }
+            return frame;
+        }
 
-                if(Config.File.lineBreakBetweenEachEntry){
-                    writeEntryToFileOrLog("", filePath, null);
+        private void load(){   //Reads what the sidecar has that has not been read yet, or all of it again if it has shrunk
+            File dictionaryFile = new File(dictionaryFilePath);
+            if (dictionaryFile.length() < loadedLength) {
+                reset();
+            }
+            if (!dictionaryFile.isFile()) {
+                return;
+            }
+            LineReader lines = null;
+            try {
+                lines = new LineReader(dictionaryFilePath, loadedLength);
+                String line;
+                while ((line = lines.readLine()) != null) {
+                    int space = line.indexOf(' ');
+                    if (space > 0) {
+                        String id = line.substring(0, space);
+                        add(id, line.substring(space + 1));
+                        nextId = Math.max(nextId, Integer.parseInt(id, Character.MAX_RADIX) + 1);
+                    }
+                }
+                loadedLength = lines.position;
+            } catch(Exception e){
+                Error.log(e);
+            } finally {
+                if (lines != null) {
+                    lines.close();
                 }
             }
-        } catch(Exception e){
-            Error.log(e);
         }
-    }
 
-    private static String constructEntryText(Object message, Exception exception){
-        try{
-            if(message != null || exception != null) {
-                StringBuilder txt = new StringBuilder();
-                if (message != null) {
-                    txt.append(String.valueOf(message));
+        private void add(String id, String frame){
+            idsByFrame.put(frame, id);
+            framesById.put(id, frame);
+        }
+
+        private void reset(){
+            idsByElement.clear();
+            idsByFrame.clear();
+            framesById.clear();
+            nextId = 0;
+            loadedLength = 0;
+        }
+
+        private static String expand(String filePath, String entry){   //"entry" with every "@[id]" frame line written back out in full as "at [frame]"
+            if (filePath == null || entry == null || entry.indexOf("\t" + ID_MARKER) < 0) {
+                return entry;
+            }
+            FrameDictionary dictionary = forFile(filePath);
+            StringBuilder expanded = new StringBuilder(entry.length() * 4);
+            int lineStart = 0;
+            while (lineStart <= entry.length()) {
+                int lineEnd = entry.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = entry.length();
                 }
-                if (message != null && exception != null) {
-                    txt.append("\n\t");
+                int tabsEnd = lineStart;
+                while (tabsEnd < lineEnd && entry.charAt(tabsEnd) == '\t') {
+                    tabsEnd++;
                 }
-                if (exception != null) {
-                    txt.append(exceptionToString(exception));
+                String frame = null;
+                if (tabsEnd > lineStart && tabsEnd < lineEnd && entry.charAt(tabsEnd) == ID_MARKER) {
+                    frame = dictionary.frame(entry.substring(tabsEnd + 1, lineEnd));
+                }
+                if (frame != null) {
+                    expanded.append(entry, lineStart, tabsEnd).append("at ").append(frame);
+                } else {
+                    expanded.append(entry, lineStart, lineEnd);
+                }
+                if (lineEnd < entry.length()) {
+                    expanded.append('\n');
                 }
-                return txt.toString();
+                lineStart = lineEnd + 1;
             }
-        } catch (Exception e){
-            Error.log(e);
+            return expanded.toString();
         }
-        return null;
     }
 
-    private static String getApplicationPackageName(Context context){
-        try {
-            String packageName = DEFAULT_PACKAGE_NAME;
-            if (context != null && context.getClass() != null && context.getClass().getPackage() != null && context.getClass().getPackage().getName() != null) {
-                packageName = context.getClass().getPackage().getName();
+    private static class StackTraceWriter {    //Renders a stack trace the same way Throwable.printStackTrace() does, straight into the entry being written
+        private static final String CAUSE_CAPTION = "Caused by: ";
+        private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+
+        private static void write(Throwable exception, StringBuilder out){
+            write(exception, null, out);
+        }
+
+        private static void write(Throwable exception, FrameDictionary dictionary, StringBuilder out){    //Frames already in "dictionary" are written as their id, pass null to write every frame in full
+            IdentityHashMap<Throwable, Boolean> written = new IdentityHashMap<Throwable, Boolean>();
+            written.put(exception, Boolean.TRUE);
+            out.append(String.valueOf(exception));
+            StackTraceElement[] trace = exception.getStackTrace();
+            writeFrames(trace, trace.length - 1, "", dictionary, out);
+            writeEnclosed(exception, trace, "", written, 0, dictionary, out);
+        }
+
+        private static void writeEnclosed(Throwable exception, StackTraceElement[] trace, String prefix, IdentityHashMap<Throwable, Boolean> written, int causeDepth, FrameDictionary dictionary, StringBuilder out){ //Suppressed exceptions and the cause, each only writing the frames it does not share with "trace"
+            for (Throwable suppressed : suppressedOf(exception)) {
+                writeEnclosing(suppressed, trace, SUPPRESSED_CAPTION, prefix + "\t", written, causeDepth, dictionary, out);
             }
-            if (packageName == null || packageName.equals("")) {
-                packageName = DEFAULT_PACKAGE_NAME;
+            Throwable cause = exception.getCause();
+            if (cause != null) {
+                if (Config.Exceptions.maxCausedByDepth >= 0 && causeDepth >= Config.Exceptions.maxCausedByDepth) {
+                    out.append('\n').append(prefix).append("\t... \"Caused by\" chain not written past a depth of ").append(Config.Exceptions.maxCausedByDepth);
+                } else {
+                    writeEnclosing(cause, trace, CAUSE_CAPTION, prefix, written, causeDepth + 1, dictionary, out);
+                }
+            }
+        }
+
+        private static void writeEnclosing(Throwable exception, StackTraceElement[] enclosingTrace, String caption, String prefix, IdentityHashMap<Throwable, Boolean> written, int causeDepth, FrameDictionary dictionary, StringBuilder out){
+            if (written.containsKey(exception)) {
+                out.append('\n').append(prefix).append("\t[CIRCULAR REFERENCE:").append(String.valueOf(exception)).append(']');
+                return;
+            }
+            written.put(exception, Boolean.TRUE);
+            StackTraceElement[] trace = exception.getStackTrace();
+            int last = trace.length - 1;
+            int enclosingLast = enclosingTrace.length - 1;
+            while (last >= 0 && enclosingLast >= 0 && trace[last].equals(enclosingTrace[enclosingLast])) {
+                last--;
+                enclosingLast--;
+            }
+            out.append('\n').append(prefix).append(caption).append(String.valueOf(exception));
+            writeFrames(trace, last, prefix, dictionary, out);
+            int framesInCommon = trace.length - 1 - last;
+            if (framesInCommon != 0) {
+                out.append('\n').append(prefix).append("\t... ").append(framesInCommon).append(" more");
+            }
+            writeEnclosed(exception, trace, prefix, written, causeDepth, dictionary, out);
+        }
+
+        private static void writeFrames(StackTraceElement[] trace, int last, String prefix, FrameDictionary dictionary, StringBuilder out){    //Frames 0 to "last", capped at Config.Exceptions.maxFramesPerThrowable
+            int frames = last + 1;
+            int writing = (Config.Exceptions.maxFramesPerThrowable > 0) ? Math.min(frames, Config.Exceptions.maxFramesPerThrowable) : frames;
+            String[] ids = (dictionary != null && writing > 0) ? dictionary.ids(trace, writing) : null;
+            for (int i = 0; i < writing; i++) {
+                if (ids != null && ids[i] != null) {
+                    out.append('\n').append(prefix).append('\t').append(FrameDictionary.ID_MARKER).append(ids[i]);
+                } else {
+                    out.append('\n').append(prefix).append("\tat ").append(String.valueOf(trace[i]));
+                }
+            }
+            if (writing < frames) {
+                out.append('\n').append(prefix).append("\t... ").append(frames - writing).append(" frames not written");
             }
-            return packageName;
-        } catch(Exception e){
-            Error.log(e);
-            return DEFAULT_PACKAGE_NAME;
+        }
+
+        private static Throwable[] suppressedOf(Throwable exception){
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.KITKAT) {   //Throwable.getSuppressed() was added in API 19
+                return exception.getSuppressed();
+            }
+            return new Throwable[0];
         }
     }
 
-    private static String constructFilePath(Object addEntryToThisFileName){
-        try {
-            StringBuilder filePath = new StringBuilder();
-            filePath.append(String.valueOf(Config.File.getFullPathToMainDirectory()));
-            if(Config.File.addEntriesIntoSubdirectoryCreatedToday){
-                filePath.append(getSubdirectoryDate()).append(DIR_DELIMITER);
+    private static class Timing {
+        private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+        private static volatile boolean scheduled = false;
+
+        private static void record(Object name, long elapsedNanoTime){
+            try {
+                if (!katScanEnabled() && !WarmUp.isHolding()) {
+                    return;
+                }
+                String key = String.valueOf(name);
+                Histogram histogram = histograms.get(key);
+                if (histogram == null) {
+                    Histogram created = new Histogram();
+                    histogram = histograms.putIfAbsent(key, created);
+                    if (histogram == null) {
+                        histogram = created;
+                    }
+                }
+                histogram.record(elapsedNanoTime);
+                if (!scheduled) {
+                    schedule();
+                }
+                if (Config.Timing.slowThresholdMilliseconds >= 0 && elapsedNanoTime > Config.Timing.slowThresholdMilliseconds * 1000000L) {
+                    start("slow " + key + " took " + Histogram.formatMilliseconds(elapsedNanoTime), null, Config.Timing.fileName);
+                }
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+
+        private static void schedule(){     //Once, two flush loops would write every summary twice over split intervals
+            synchronized (Timing.class) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            Summaries.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                    Summaries.schedule(this, Config.Timing.summaryIntervalMilliseconds);
+                }
+            }, Config.Timing.summaryIntervalMilliseconds);
+        }
+
+        private static void flush(){
+            try {
+                for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+                    Histogram interval = entry.getValue().takeInterval();
+                    if (interval.count > 0) {
+                        start("timing " + entry.getKey() + " | count=" + interval.count +
+                                " p50=" + Histogram.formatMilliseconds(interval.percentile(0.50)) +
+                                " p90=" + Histogram.formatMilliseconds(interval.percentile(0.90)) +
+                                " p99=" + Histogram.formatMilliseconds(interval.percentile(0.99)) +
+                                " max=" + Histogram.formatMilliseconds(interval.max), null, Config.Timing.fileName);
+                    }
+                }
+            } catch(Exception e){
+                Error.log(e);
             }
-            filePath.append(String.valueOf((addEntryToThisFileName != null) ? addEntryToThisFileName : Config.File.defaultFileName));
-            filePath.append(String.valueOf(Config.File.fileExtension));
-            return filePath.toString();
-        } catch(Exception e){
-            Error.log(e);
-            return null;
         }
     }
 
-    private static void writeEntryToFileOrLog(Object txt, String filePath, String date){
-        try {
-            if(txt != null) {
-                StringBuilder entry = new StringBuilder();
-                if(date != null) {
-                    entry.append(date);
-                    if(Config.File.writeCountWithEveryEntry) {
-                        entry.append(String.valueOf(Config.spaceSeparator)).append(entryCount);
+    private static class Counting {
+        private static final ConcurrentHashMap<String, CounterFile> files = new ConcurrentHashMap<String, CounterFile>();
+        private static volatile boolean scheduled = false;
+
+        private static void add(Object addEntryToThisFileName, Object name, long delta){
+            try {
+                if (!katScanEnabled() && !WarmUp.isHolding()) {
+                    return;
+                }
+                String fileName = String.valueOf(addEntryToThisFileName != null ? addEntryToThisFileName : Config.Counting.fileName);
+                CounterFile file = files.get(fileName);
+                if (file == null) {
+                    CounterFile created = new CounterFile();
+                    file = files.putIfAbsent(fileName, created);
+                    if (file == null) {
+                        file = created;
                     }
-                    entry.append(String.valueOf(Config.spaceSeparator)).append(String.valueOf(txt));
-                } else {
-                    entry.append(String.valueOf(txt));
                 }
-                boolean wroteEntryToFile = false;
-                if(designatedWriteLocation(true) && properPermissionsGranted && filePath != null) {
-                    if (Storage.createFile(filePath)) {
-                        FileWriter fw = new FileWriter(filePath, true);
-                        BufferedWriter bw = new BufferedWriter(fw);
-                        PrintWriter out = new PrintWriter(bw);
-                        out.println(entry.toString());
-                        out.flush();
-
-                        //Attempt to free up resources faster
-                        fw.close();
-                        bw.close();
-                        out.close();
-                        out = null;
-                        bw = null;
-                        fw = null;
-                        wroteEntryToFile = true;
-                    } else {
-                        Error.log(KATSCAN_ERROR_PREFIX + "File could not be created or does not exist | filePath: " + filePath + " message: " + entry.toString());
+                String key = String.valueOf(name);
+                Counter counter = file.counters.get(key);
+                if (counter == null) {
+                    Counter created = new Counter();
+                    counter = file.counters.putIfAbsent(key, created);
+                    if (counter == null) {
+                        counter = created;
                     }
                 }
-                if(designatedWriteLocation(false)) {
-                    executeConsolePrint(entry.toString());
+                counter.add(delta);
+                if (!scheduled) {
+                    schedule();
                 }
-                if(wroteEntryToFile) {
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+
+        private static void schedule(){     //Once, two flush loops would write every summary twice over split intervals
+            synchronized (Counting.class) {
+                if (scheduled) {
                     return;
                 }
+                scheduled = true;
             }
-        } catch (Exception e) {
-            Error.log(e);
+            Summaries.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                    Summaries.schedule(this, Config.Counting.summaryIntervalMilliseconds);
+                }
+            }, Config.Counting.summaryIntervalMilliseconds);
         }
-        try {
-            if (!properPermissionsGranted && !hasDeniedPermissionsMessageDisplayed && designatedWriteLocation(true)) {
-                hasDeniedPermissionsMessageDisplayed = true;
-                Error.log(KATSCAN_ERROR_PREFIX + "Required \"Storage\" permission has not been granted by the device.\n" +
-                        "\tKatScan only requires 1 permission,\n" +
-                        "\t" + FULL_WRITE_PERM + "\n" +
-                        "\twhich needs to be added to the application's AndroidManifest.xml file.\n" +
-                        "\tThis permission is needed to output Kat.scan() entries to a separate file.\n" +
-                        "\tIf this permission has already been added to the project manifest, make sure Kat.setup() is called just once in your project before your first Kat.scan() call.\n" +
-                        "\tIf on a device using API 23 or higher, this will trigger a popup asking the user to grant the \"Storage\" permission your app.\n" +
-                        "\tIf the \"Never ask again\" checkbox was checked and the permission was revoked you can also enable this permission by going to the app settings on your device and enabling it there.\n");
+
+        private static void flush(){
+            try {
+                long now = System.currentTimeMillis();
+                for (Map.Entry<String, CounterFile> file : files.entrySet()) {
+                    StringBuilder summary = null;
+                    long intervalMilliseconds;
+                    synchronized (file.getValue()) {
+                        intervalMilliseconds = Math.max(1, now - file.getValue().intervalStart);
+                        file.getValue().intervalStart = now;
+                    }
+                    for (Map.Entry<String, Counter> counter : file.getValue().counters.entrySet()) {
+                        long count = counter.getValue().takeInterval();
+                        if (count != 0) {
+                            summary = (summary == null) ? new StringBuilder("counts | ") : summary.append(", ");
+                            long hundredthsPerSecond = Math.round(count * 100000.0 / intervalMilliseconds);
+                            long absoluteHundredths = Math.abs(hundredthsPerSecond);   //Formatted without the sign so rates between -1 and 0 keep theirs
+                            long fraction = absoluteHundredths % 100;
+                            summary.append(counter.getKey()).append('=').append(count)
+                                    .append(" (").append(hundredthsPerSecond < 0 ? "-" : "").append(absoluteHundredths / 100).append(fraction < 10 ? ".0" : ".").append(fraction).append("/s)");
+                        }
+                    }
+                    if (summary != null) {
+                        start(summary.toString(), null, file.getKey());
+                    }
+                }
+            } catch(Exception e){
+                Error.log(e);
             }
-            if (txt != null && filePath == null && !hasInvalidPathMessageDisplayed && designatedWriteLocation(true)) {
-                hasInvalidPathMessageDisplayed = true;
-                Error.log(KATSCAN_ERROR_PREFIX + "File path is null so a file could not be written");
+        }
+    }
+
+    private static class CounterFile {  //Every counter summarized onto the same line of a file
+        private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+        private long intervalStart = System.currentTimeMillis();
+    }
+
+    private static class Counter {  //Spread over stripes picked by thread so threads counting the same name at once rarely contend over the same value
+        private static final int STRIPES = 16;
+        private static final int PADDING = 8;  //Keep each stripe on its own cache line
+        private final AtomicLongArray stripes = new AtomicLongArray(STRIPES * PADDING);
+
+        private void add(long delta){
+            stripes.addAndGet((int) (Thread.currentThread().getId() & (STRIPES - 1)) * PADDING, delta);
+        }
+
+        private long takeInterval(){    //Total counted so far, starting over from zero
+            long total = 0;
+            for (int stripe = 0; stripe < STRIPES; stripe++) {
+                total += stripes.getAndSet(stripe * PADDING, 0);
             }
-            if (txt != null && (Config.InternalErrors.showKatScanTextInLogsWhenFailureToWriteInFile || designatedWriteLocation(false))) {
-                if (!userPermissionRequestFinished && designatedWriteLocation(true)) {
-                    Error.log(KATSCAN_ERROR_PREFIX + "Currently requesting user to grant permission to use the " + WRITE_PERM + ".\n" +
-                            "\tBecause the following Kat.scan entry has been called during requesting time it will only be displaying in the log.");
+            return total;
+        }
+    }
+
+    private static class Histogram {    //Log-linear buckets, 8 per power of two, so any recorded duration is off by at most 12.5% in a summary
+        private static final int SUB_BUCKET_BITS = 3;
+        private long[] counts = new long[64 << SUB_BUCKET_BITS];
+        private long count = 0;
+        private long max = 0;
+
+        private synchronized void record(long value){
+            counts[bucketOf(value)]++;
+            count++;
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        private synchronized Histogram takeInterval(){  //Hands back everything recorded so far and starts over empty
+            Histogram interval = new Histogram();
+            interval.counts = counts;
+            interval.count = count;
+            interval.max = max;
+            counts = new long[counts.length];
+            count = 0;
+            max = 0;
+            return interval;
+        }
+
+        private long percentile(double percentile){
+            long rank = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank && counts[bucket] > 0) {
+                    return Math.min(highestValueIn(bucket), max);
                 }
             }
-        } catch(Exception e){
-            Error.log(e);
+            return max;
+        }
+
+        private static int bucketOf(long value){
+            if (value < (1 << SUB_BUCKET_BITS)) {
+                return (int) Math.max(0, value);
+            }
+            int highestBit = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) ((value >>> (highestBit - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1));
+            return ((highestBit - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+        }
+
+        private static long highestValueIn(int bucket){
+            if (bucket < (1 << SUB_BUCKET_BITS)) {
+                return bucket;
+            }
+            int shift = (bucket >> SUB_BUCKET_BITS) - 1;
+            long subBucket = bucket & ((1 << SUB_BUCKET_BITS) - 1);
+            return (((1L << SUB_BUCKET_BITS) + subBucket + 1) << shift) - 1;
+        }
+
+        private static String formatMilliseconds(long nanoTime){
+            long hundredths = nanoTime / 10000;
+            long fraction = hundredths % 100;
+            return (hundredths / 100) + (fraction < 10 ? ".0" : ".") + fraction + "ms";
         }
     }
 
-    private static String exceptionToString(Exception exception){
-        try{
-            if(exception != null){
-                StringWriter sw = new StringWriter();
-                exception.printStackTrace(new PrintWriter(sw));
-                String exceptionStr = sw.toString();
+    private static Executor singleDaemonThread(final String name){  //Runs everything handed to it one after another on a single thread that is started the first time and never keeps the application from exiting
+        return Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
 
-                //Attempt to free up resources faster
-                sw.close();
-                sw = null;
-                exception = null;
-                sw = null;
-                if(exceptionStr != null && exceptionStr.endsWith("\n")){    //Remove the extra line break at the end of the exception as it messes with the formatting
-                    return exceptionStr.substring(0, exceptionStr.length() - 1);
+    private static class Summaries {    //Background thread writing the in memory summaries to their files every interval
+        private static ScheduledExecutorService scheduler = null;
+
+        private static synchronized void schedule(Runnable summary, long delayMilliseconds){    //Runs "summary" once after the delay, summaries schedule themselves again so changes to their interval are picked up
+            try {
+                if (scheduler == null) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread thread = new Thread(runnable, "KatScan-summaries");
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
                 }
-                return exceptionStr;
+                scheduler.schedule(summary, Math.max(1, delayMilliseconds), TimeUnit.MILLISECONDS);
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+    }
+
+    private static class Shipping {    //Uploads days that are no longer being written to, spooling gzipped batches to disk first so nothing is read twice or lost if an upload fails
+        private static final String OFFSETS_FILE_NAME = "offsets.txt";
+        private static final String BATCH_FILE_EXTENSION = ".gz";
+        private static final String BATCH_PATH_FILE_EXTENSION = ".path";
+        private static final String TEMPORARY_FILE_EXTENSION = ".tmp";     //Renamed once complete
+        private static final long CLOSED_DAY_GRACE_MILLISECONDS = 10 * 60 * 1000;  //Entries scanned just before midnight can still be written to the day they were scanned on shortly after it
+        private static final int CONNECT_TIMEOUT_MILLISECONDS = 15 * 1000;
+        private static final int THROTTLE_CHUNK_BYTES = 8 * 1024;
+        private static final Object SHIPPING_LOCK = new Object();
+        private static volatile boolean scheduled = false;
+        private static int failedAttempts = 0;          //Guarded by SHIPPING_LOCK
+        private static long nextAttemptTime = 0;        //Guarded by SHIPPING_LOCK
+        private static long batchSequence = 0;          //Guarded by SHIPPING_LOCK
+        private static long spooledBatchBytes = 0;      //Guarded by SHIPPING_LOCK, size in the spool of the last batch spoolBatch() wrote
+        private static Executor uploader = null;        //Guarded by Shipping.class, used when Config.executor is null so uploads never hold up the writer thread
+
+        private static void schedule(){     //Only once Config.Shipping.endpointUrl is set, stops again once it is set back to null
+            if (scheduled) {
+                return;
+            }
+            synchronized (Shipping.class) {
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            Summaries.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    Executor uploadOn = Config.executor;
+                    synchronized (Shipping.class) {
+                        if (Config.Shipping.endpointUrl == null) {
+                            scheduled = false;
+                            return;
+                        }
+                        if (uploadOn == null) {
+                            if (uploader == null) {
+                                uploader = singleDaemonThread("KatScan-shipping");
+                            }
+                            uploadOn = uploader;
+                        }
+                    }
+                    try {
+                        uploadOn.execute(new Runnable() {  //Uploading can take a while, keep it off the summaries thread
+                            @Override
+                            public void run() {
+                                ship();
+                            }
+                        });
+                    } catch(Exception e){   //Executor shut down or full, try again next interval
+                        Error.log(e);
+                    }
+                    Summaries.schedule(this, Config.Shipping.intervalMilliseconds);
+                }
+            }, Config.Shipping.intervalMilliseconds);
+        }
+
+        private static int ship(){
+            synchronized (SHIPPING_LOCK) {  //One pass at a time
+                try {
+                    if (Config.Shipping.endpointUrl == null || !Config.File.addEntriesIntoSubdirectoryCreatedToday) {   //Without day subdirectories every file can still be written to so none are ever finished
+                        return 0;
+                    }
+                    File spoolDirectory = new File(Config.File.getFullPathToMainDirectory() + Config.Shipping.spoolDirectoryName);
+                    if (!Storage.createDirectory(spoolDirectory)) {
+                        return 0;
+                    }
+                    deleteUnfinishedBatches(spoolDirectory);
+                    spool(spoolDirectory);
+                    return upload(spoolDirectory);
+                } catch(Exception e){
+                    Error.log(e);
+                }
+                return 0;
+            }
+        }
+
+        private static void spool(File spoolDirectory) throws IOException {    //Copy what has not been shipped yet of every finished day into gzipped batches in the spool directory
+            File offsetsFile = new File(spoolDirectory, OFFSETS_FILE_NAME);
+            Map<String, Long> offsets = readOffsets(offsetsFile);
+            Map<String, Long> stillExisting = new HashMap<String, Long>();
+            String mainDirectory = Config.File.getFullPathToMainDirectory();
+            long spooledBytes = directorySize(spoolDirectory);
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, String> day : getDaySubdirectories().entrySet()) {
+                Calendar dayEnd = Calendar.getInstance();
+                dayEnd.setTimeInMillis(day.getKey());
+                dayEnd.add(Calendar.DAY_OF_MONTH, 1);
+                if (dayEnd.getTimeInMillis() + CLOSED_DAY_GRACE_MILLISECONDS > now) {
+                    continue;   //Still being written to
+                }
+                List<File> segments = new ArrayList<File>();
+                listFiles(new File(mainDirectory + day.getValue()), segments);
+                for (File segment : segments) {
+                    String relativePath = segment.getPath().substring(mainDirectory.length());
+                    Long shipped = offsets.get(relativePath);
+                    long offset = (shipped != null) ? shipped : 0;
+                    while (offset < segment.length() && spooledBytes < Config.Shipping.maxSpoolBytes) {
+                        long spooled = spoolBatch(spoolDirectory, segment, relativePath, offset);
+                        if (spooled <= 0) {
+                            break;
+                        }
+                        offset += spooled;
+                        spooledBytes += spooledBatchBytes;  //What the batch takes up in the spool, like directorySize() counts, not how much of the file it covers
+                        offsets.put(relativePath, offset);
+                        writeOffsets(offsetsFile, offsets);     //Only once the batch is safely in the spool
+                    }
+                    stillExisting.put(relativePath, offset);
+                }
+            }
+            if (stillExisting.size() != offsets.size()) {   //Forget files deleted since
+                writeOffsets(offsetsFile, stillExisting);
             }
-        } catch(Exception e){
-            Error.log(e.getMessage());  //Message passed in instead of error as will cause a stack overflow if exception is passed in.
         }
-        return "";
-    }
 
-    private static String getEntryDate(){
-        try {
-            if (Config.Date.includePrefixedDateForEachFileEntry) {
-                return new SimpleDateFormat(String.valueOf(Config.Date.entryDateFormatPattern)).format(Calendar.getInstance().getTime());
+        private static void deleteUnfinishedBatches(File spoolDirectory){  //What is left of batches that failed partway through spooling, which would otherwise count against maxSpoolBytes for good. Their files are spooled again as the offset was never moved past them.
+            String[] names = spoolDirectory.list();
+            if (names == null) {
+                return;
+            }
+            for (String name : names) {
+                boolean unfinished = name.endsWith(TEMPORARY_FILE_EXTENSION);
+                if (name.endsWith(BATCH_PATH_FILE_EXTENSION)) {
+                    unfinished = !new File(spoolDirectory, name.substring(0, name.length() - BATCH_PATH_FILE_EXTENSION.length()) + BATCH_FILE_EXTENSION).isFile();
+                }
+                if (unfinished && !new File(spoolDirectory, name).delete()) {
+                    Error.log(KATSCAN_ERROR_PREFIX + "Could not delete unfinished batch " + name);
+                }
             }
-        } catch (Exception e){
-            Error.log(e);
         }
-        return "";
-    }
 
-    private static String getSubdirectoryDate(){
-        try {
-            if (Config.File.addEntriesIntoSubdirectoryCreatedToday) {
-                return new SimpleDateFormat(String.valueOf(Config.Date.subdirectoryDateFormatPattern)).format(Calendar.getInstance().getTime());
+        private static long spoolBatch(File spoolDirectory, File segment, String relativePath, long offset) throws IOException { //Bytes of "segment" spooled from "offset", ending on a line break when there is one
+            int length = (int) Math.min(Math.max(1, Config.Shipping.maxBatchBytes), segment.length() - offset);
+            byte[] bytes = new byte[length];
+            RandomAccessFile in = new RandomAccessFile(segment, "r");
+            try {
+                in.seek(offset);
+                in.readFully(bytes);
+            } finally {
+                in.close();
             }
-        } catch (Exception e){
-            Error.log(e);
+            if (offset + length < segment.length()) {
+                for (int i = length - 1; i > 0; i--) {
+                    if (bytes[i] == '\n') {
+                        length = i + 1;
+                        break;
+                    }
+                }
+            }
+            String batchName = "batch_" + System.currentTimeMillis() + "_" + (batchSequence++);
+            File pathFile = new File(spoolDirectory, batchName + BATCH_PATH_FILE_EXTENSION);
+            FileWriter pathWriter = new FileWriter(pathFile);
+            pathWriter.write(relativePath + "\n" + offset + "\n");
+            pathWriter.close();
+            File batchFile = new File(spoolDirectory, batchName + BATCH_FILE_EXTENSION + TEMPORARY_FILE_EXTENSION);
+            GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(batchFile));
+            try {
+                out.write(bytes, 0, length);
+            } finally {
+                out.close();
+            }
+            spooledBatchBytes = batchFile.length() + pathFile.length();
+            if (!batchFile.renameTo(new File(spoolDirectory, batchName + BATCH_FILE_EXTENSION))) {  //Only complete batches are ever uploaded
+                throw new IOException("Could not finish spooling " + batchFile);
+            }
+            return length;
         }
-        return "";
-    }
 
-    private static boolean requestStoragePermissionIfNotAlreadyGranted(Context context) {
-        try {
-            if (isWriteStoragePermissionGranted(context)) {
-                return true;
-            } else if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.M && katScanEnabled() && !hasAlreadyAskedForPermission && designatedWriteLocation(true)) {
-                if (!hasRequestPermissionContextErrorDisplayed && (context == null || !(context instanceof Activity))) {
-                    hasRequestPermissionContextErrorDisplayed = true;
-                    Error.log(KATSCAN_ERROR_PREFIX + "Required \"Storage\" permission has not been granted by the device and cannot be requested with the \"context\" passed in.\n" +
-                            "\tAn active Activity needs to be passed in to Kat.setup() to request the " + WRITE_PERM + " permission which is needed to output Kat.scan() entries to a file.\n" +
-                            "\tAlso please make sure the following permission has bee added to your project's manifest xml:\n" +
-                            "\t" + FULL_WRITE_PERM + "\n");
+        private static int upload(File spoolDirectory){    //Upload spooled batches oldest first, stopping at the first failure and backing off before trying again
+            int uploaded = 0;
+            if (System.currentTimeMillis() < nextAttemptTime) {
+                return 0;
+            }
+            String[] names = spoolDirectory.list();
+            if (names == null) {
+                return 0;
+            }
+            List<String> batches = new ArrayList<String>();
+            for (String name : names) {
+                if (name.endsWith(BATCH_FILE_EXTENSION)) {
+                    batches.add(name);
                 }
-                if (context != null && context instanceof Activity) {
-                    hasAlreadyAskedForPermission = true;
-                    try {
-                        waitForUserPermissionRequestToFinish(context);
-                        ((Activity) context).requestPermissions(new String[]{android.Manifest.permission.WRITE_EXTERNAL_STORAGE}, Config.PermissionRequest.codeID);
-                    } catch (Exception e) {
-                        userPermissionRequestFinished = true;
+            }
+            Collections.sort(batches, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {    //Numerically by creation time then sequence
+                    String[] aParts = a.substring(0, a.length() - BATCH_FILE_EXTENSION.length()).split("_");
+                    String[] bParts = b.substring(0, b.length() - BATCH_FILE_EXTENSION.length()).split("_");
+                    for (int i = 1; i < Math.min(aParts.length, bParts.length); i++) {
+                        int compared = compareNumbers(aParts[i], bParts[i]);
+                        if (compared != 0) {
+                            return compared;
+                        }
                     }
+                    return a.compareTo(b);
+                }
+            });
+            for (String name : batches) {
+                File batchFile = new File(spoolDirectory, name);
+                File pathFile = new File(spoolDirectory, name.substring(0, name.length() - BATCH_FILE_EXTENSION.length()) + BATCH_PATH_FILE_EXTENSION);
+                try {
+                    String relativePath = "";
+                    String offset = "0";
+                    if (pathFile.isFile()) {
+                        BufferedReader br = new BufferedReader(new FileReader(pathFile));
+                        relativePath = String.valueOf(br.readLine());
+                        offset = String.valueOf(br.readLine());
+                        br.close();
+                    }
+                    post(batchFile, relativePath, offset);
+                    batchFile.delete();
+                    pathFile.delete();
+                    uploaded++;
+                    failedAttempts = 0;
+                } catch(Exception e){
+                    failedAttempts++;
+                    long backoff = Math.max(1, Config.Shipping.retryBaseMilliseconds) << Math.min(failedAttempts - 1, 20);
+                    nextAttemptTime = System.currentTimeMillis() + Math.min(backoff, Config.Shipping.retryMaxMilliseconds);
+                    Error.log(KATSCAN_ERROR_PREFIX + "Could not ship " + name + " to " + Config.Shipping.endpointUrl + ", trying again in " + Math.min(backoff, Config.Shipping.retryMaxMilliseconds) + "ms: " + e);
+                    break;
                 }
-                return false;
             }
-        } catch(Exception e){
-            Error.log(e);
+            return uploaded;
         }
-        return false;
-    }
-
-    private static void waitForUserPermissionRequestToFinish(Context context){    //Instead of timer, could use the normal permission callback listener but do not want to add listeners to KatScan as it could interfere negatively with the rest of the application and its permission callback listeners.
-        try {
-            if (permissionRequestTimer == null && !userPermissionRequestFinished && context != null) {
-                permissionRequestTimer = new CountDownTimer(Config.PermissionRequest.millisecondsPerAcceptPermissionsCheck, 1000) {
-                    public void onTick(long millisUntilFinished) {
-                    }
 
-                    public void onFinish() {
-                        try {
-                            if (isWriteStoragePermissionGranted(context) || userPermissionRequestFinished) {
-                                userPermissionRequestFinished = true;
-                                permissionRequestTimer = null;
-                            } else {
-                                permissionRequestTimeCounter = permissionRequestTimeCounter + 1;
-                                if (!userPermissionRequestFinished && permissionRequestTimer != null && !properPermissionsGranted && context != null &&
-                                        Config.PermissionRequest.maxWaitTimeForUserToAcceptPermissions > permissionRequestTimeCounter * Config.PermissionRequest.millisecondsPerAcceptPermissionsCheck) {
-
-                                    permissionRequestTimer.start();
-                                } else {
-                                    userPermissionRequestFinished = true;
-                                    Error.log(KATSCAN_ERROR_PREFIX + WRITE_PERM + " permission was not granted or waiting for user input timed-out.\n" +
-                                            "\tKat.scan() calls cannot write to files because of it.\n" +
-                                            "\tTo grant the required permission needed either restart your application and grant when the permission request appears or find your project in your device's application list under your device's settings and enable it there.");
-                                }
+        private static void post(File batchFile, String relativePath, String offset) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(Config.Shipping.endpointUrl).openConnection();
+            InputStream in = null;
+            try {
+                connection.setConnectTimeout(CONNECT_TIMEOUT_MILLISECONDS);
+                connection.setReadTimeout(CONNECT_TIMEOUT_MILLISECONDS);
+                connection.setDoOutput(true);
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("Content-Type", "text/plain; charset=" + CHARSET);
+                connection.setRequestProperty("Content-Encoding", "gzip");
+                connection.setRequestProperty("X-KatScan-File", relativePath);
+                connection.setRequestProperty("X-KatScan-Offset", offset);
+                connection.setFixedLengthStreamingMode((int) batchFile.length());
+                OutputStream out = connection.getOutputStream();
+                in = new FileInputStream(batchFile);
+                byte[] buffer = new byte[THROTTLE_CHUNK_BYTES];
+                long started = System.currentTimeMillis();
+                long sent = 0;
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    sent += read;
+                    if (Config.Shipping.maxBytesPerSecond > 0) {   //Sleep off however far ahead of the bandwidth cap this is
+                        long ahead = (sent * 1000 / Config.Shipping.maxBytesPerSecond) - (System.currentTimeMillis() - started);
+                        if (ahead > 0) {
+                            try {
+                                Thread.sleep(ahead);
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                throw new IOException("Interrupted while shipping");
                             }
-                        } catch(Exception e){
-                            userPermissionRequestFinished = true;
-                            Error.log(e);
                         }
                     }
-                };
-                permissionRequestTimer.start();
+                }
+                out.close();
+                int status = connection.getResponseCode();
+                if (status < 200 || status >= 300) {
+                    throw new IOException("HTTP " + status);
+                }
+            } finally {
+                if (in != null) {
+                    in.close();
+                }
+                connection.disconnect();
             }
-        } catch(Exception e){
-            userPermissionRequestFinished = true;
-            Error.log(e);
         }
-    }
 
-    private static boolean isWriteStoragePermissionGranted(Context context){
-        try {
-            if (properPermissionsGranted) {
-                return properPermissionsGranted;
+        private static void listFiles(File directory, List<File> files){   //Every Kat.scan() file under "directory", leaving out time index sidecar files which only make sense on this device
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return;
             }
-            if (context != null && !properPermissionsGranted) {
-                properPermissionsGranted = context.checkCallingOrSelfPermission(android.Manifest.permission.WRITE_EXTERNAL_STORAGE) == PackageManager.PERMISSION_GRANTED;
-                if (properPermissionsGranted) {
-                    userPermissionRequestFinished = true;
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    listFiles(child, files);
+                } else if (!child.getName().endsWith(String.valueOf(Config.Index.fileExtension))) {
+                    files.add(child);
                 }
-                return properPermissionsGranted;
-            }
-        } catch(Exception e){
-            if(!hasWriteStoragePermissionGrantedErrorMessageDisplayed && Config.InternalErrors.showPermissionGrantedErrorIfOccurs) {
-                hasWriteStoragePermissionGrantedErrorMessageDisplayed = true;
-                Error.log(e);
             }
         }
-        return false;
-    }
 
-    private static boolean katScanEnabled(){
-        return applicationRunningInDebug || enableKatScanRegardlessIfRunningInDebug;
-    }
+        private static long directorySize(File directory){
+            long size = 0;
+            File[] children = directory.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    size += child.length();
+                }
+            }
+            return size;
+        }
 
-    private static Boolean designatedWriteLocation(Boolean writeKatScanEntriesToFileInsteadOfLogMustBeTrue) {
-        if(Config.File.writeKatScanEntriesToFileAndLog) {
-            return true;
+        private static Map<String, Long> readOffsets(File offsetsFile){     //"[offset shipped up to] [path relative to the main directory]" per line
+            Map<String, Long> offsets = new HashMap<String, Long>();
+            try {
+                if (offsetsFile.isFile()) {
+                    BufferedReader br = new BufferedReader(new FileReader(offsetsFile));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        int space = line.indexOf(' ');
+                        if (space > 0) {
+                            offsets.put(line.substring(space + 1), Long.parseLong(line.substring(0, space)));
+                        }
+                    }
+                    br.close();
+                }
+            } catch(Exception e){
+                Error.log(e);
+            }
+            return offsets;
         }
 
-        if(writeKatScanEntriesToFileInsteadOfLogMustBeTrue) {
-            return Config.File.writeKatScanEntriesToFileInsteadOfLog;
-        } else {
-            return !Config.File.writeKatScanEntriesToFileInsteadOfLog;
+        private static void writeOffsets(File offsetsFile, Map<String, Long> offsets) throws IOException {
+            File temporary = new File(offsetsFile.getPath() + TEMPORARY_FILE_EXTENSION);
+            FileWriter fw = new FileWriter(temporary);
+            for (Map.Entry<String, Long> offset : offsets.entrySet()) {
+                fw.write(offset.getValue() + " " + offset.getKey() + "\n");
+            }
+            fw.close();
+            offsetsFile.delete();
+            if (!temporary.renameTo(offsetsFile)) {
+                throw new IOException("Could not save shipped offsets to " + offsetsFile);
+            }
         }
-    }
 
-    private static void executeConsolePrint(Object message){
-        if(applicationRunningInDebug) {
-            String txt = String.valueOf(message);
-            if (Config.InternalErrors.showKatScanInternallyCaughtErrorsAsLogsOverPrintln) {
-                String tag = String.valueOf(Config.InternalErrors.logTag);
-                switch (Config.InternalErrors.loggingMethod) {
-                    case ERROR:
-                        Log.e(tag, txt);
-                        break;
-                    case WARNING:
-                        Log.w(tag, txt);
-                        break;
-                    case INFORMATION:
-                        Log.i(tag, txt);
-                        break;
-                    case DEBUG:
-                        Log.d(tag, txt);
-                        break;
-                    case VERBOSE:
-                        Log.v(tag, txt);
-                        break;
-                    default:
-                        Log.d(tag, txt);
-                }
-            } else {
-                System.err.println(txt);
+        private static int compareNumbers(String a, String b){
+            try {
+                long difference = Long.parseLong(a) - Long.parseLong(b);
+                return (difference < 0) ? -1 : ((difference > 0) ? 1 : 0);
+            } catch(Exception e){
+                return a.compareTo(b);
             }
         }
     }
@@ -568,6 +2631,246 @@ public class Kat {
         }
     }
 
+    private static class TimeIndex {   //Sidecar file next to each Kat.scan() file with one "[bucket start in milliseconds] [byte offset of the first entry in that bucket]" line per time bucket entries were written in
+        private static final Map<String, Long> lastBucketByFilePath = new HashMap<String, Long>();   //Guarded by FILE_WRITE_LOCK, only files written to today
+        private static long dayStart = Long.MAX_VALUE;     //Guarded by FILE_WRITE_LOCK, day "lastBucketByFilePath" is for
+        private static long dayEnd = Long.MIN_VALUE;       //Guarded by FILE_WRITE_LOCK
+
+        private static String indexFilePath(String filePath){
+            return filePath + String.valueOf(Config.Index.fileExtension);
+        }
+
+        private static void record(String filePath, long time, long offset){  //Must be called holding FILE_WRITE_LOCK just before the entry is appended at "offset"
+            try {
+                long bucketMilliseconds = Math.max(1, Config.Index.bucketMilliseconds);
+                long bucket = time - (time % bucketMilliseconds);
+                if (time < dayStart || time >= dayEnd) {    //Forget files from other days so the map does not keep growing, any still written to read their last bucket back from disk
+                    lastBucketByFilePath.clear();
+                    dayStart = startOfDay(time);
+                    Calendar nextDay = Calendar.getInstance();
+                    nextDay.setTimeInMillis(dayStart);
+                    nextDay.add(Calendar.DAY_OF_MONTH, 1);
+                    dayEnd = nextDay.getTimeInMillis();
+                }
+                String indexFilePath = indexFilePath(filePath);
+                Long lastBucket = lastBucketByFilePath.get(filePath);
+                if (offset == 0) {                  //File was just created (or emptied) so whatever index is left over no longer points at anything
+                    new File(indexFilePath).delete();
+                    lastBucket = null;
+                } else if (lastBucket == null) {    //First entry to this file since the application started, continue the index already on disk
+                    List<long[]> buckets = read(indexFilePath);
+                    lastBucket = buckets.isEmpty() ? null : buckets.get(buckets.size() - 1)[0];
+                }
+                if (lastBucket == null || bucket > lastBucket) {    //Only moving forward in time keeps the index sorted if the device clock is turned back
+                    FileWriter fw = new FileWriter(indexFilePath, true);
+                    fw.write(bucket + " " + offset + "\n");
+                    fw.close();
+                    lastBucket = bucket;
+                }
+                lastBucketByFilePath.put(filePath, lastBucket);
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+
+        private static List<long[]> read(String indexFilePath){
+            List<long[]> buckets = new ArrayList<long[]>();
+            try {
+                if (new File(indexFilePath).isFile()) {
+                    BufferedReader br = new BufferedReader(new FileReader(indexFilePath));
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        int space = line.indexOf(' ');
+                        if (space > 0) {
+                            buckets.add(new long[]{Long.parseLong(line.substring(0, space)), Long.parseLong(line.substring(space + 1).trim())});
+                        }
+                    }
+                    br.close();
+                }
+            } catch(Exception e){
+                Error.log(e);
+            }
+            return buckets;
+        }
+
+        private static int query(String filePath, long fromMilliseconds, long toMilliseconds, Filter filter, EntryListener listener){
+            int matched = 0;
+            EntryReader reader = null;
+            try {
+                if (!new File(filePath).isFile()) {
+                    return 0;
+                }
+                long startOffset = 0;
+                long endOffset = -1;    //-1 reads to the end of the file
+                boolean pastEnd = false;
+                for (long[] bucket : read(indexFilePath(filePath))) {
+                    if (bucket[0] <= fromMilliseconds) {
+                        startOffset = bucket[1];
+                    } else if (bucket[0] > toMilliseconds) {
+                        if (pastEnd) {  //Entries are timed when scanned but appended later, one scanned just before a bucket starts can be written after it so read one bucket further and let the entry times decide
+                            endOffset = bucket[1];
+                            break;
+                        }
+                        pastEnd = true;
+                    }
+                }
+                long resolution = entryDateResolution();
+                reader = new EntryReader(filePath, startOffset);
+                while (reader.next() && (endOffset < 0 || reader.entryStart < endOffset)) {
+                    if (reader.entryTime >= 0 && (reader.entryTime > toMilliseconds || reader.entryTime + resolution <= fromMilliseconds)) {
+                        continue;
+                    }
+                    String entry = FrameDictionary.expand(filePath, reader.entry);
+                    if (filter == null || filter.accept(entry)) {
+                        matched++;
+                        listener.onEntry(entry);
+                    }
+                }
+            } catch(Exception e){
+                Error.log(e);
+            } finally {
+                if (reader != null) {
+                    reader.close();
+                }
+            }
+            return matched;
+        }
+
+        private static long entryDateResolution(){  //Entry dates are truncated to the smallest unit in their pattern, an entry written at 12:00:00.900 reads back as 12:00:00
+            String pattern = String.valueOf(Config.Date.entryDateFormatPattern);
+            if (pattern.indexOf('S') >= 0) {
+                return 1;
+            } else if (pattern.indexOf('s') >= 0) {
+                return 1000;
+            } else if (pattern.indexOf('m') >= 0) {
+                return 60 * 1000;
+            }
+            return 60 * 60 * 1000;
+        }
+    }
+
+    private static class EntryReader {  //Reads a Kat.scan() file back one entry at a time, keeping multi-line entries (stack traces) together
+        private final LineReader lines;
+        private final SimpleDateFormat dateFormat;  //null when entries are not prefixed with a date, every line is then its own entry
+        private String nextLine = null;
+        private long nextLineStart = 0;
+        private long nextLineTime = -1;
+        private String entry = null;
+        private long entryTime = -1;                //-1 when the entry has no date prefix that could be read
+        private long entryStart = 0;
+        private long entryEnd = 0;
+
+        private EntryReader(String filePath, long offset) throws IOException {
+            lines = new LineReader(filePath, offset);
+            if (Config.Date.includePrefixedDateForEachFileEntry) {
+                dateFormat = new SimpleDateFormat(String.valueOf(Config.Date.entryDateFormatPattern));
+                dateFormat.setLenient(false);
+            } else {
+                dateFormat = null;
+            }
+        }
+
+        private boolean next() throws IOException {     //Moves on to the next complete entry, false when there are none left
+            if (nextLine == null && !readNextLine()) {
+                return false;
+            }
+            while (nextLine.trim().length() == 0) {     //Skip line breaks between entries
+                if (!readNextLine()) {
+                    return false;
+                }
+            }
+            StringBuilder text = new StringBuilder(nextLine);
+            int textLength = text.length();
+            entryStart = nextLineStart;
+            entryTime = nextLineTime;
+            while (readNextLine() && dateFormat != null && nextLineTime < 0) {
+                text.append('\n').append(nextLine);
+                if (nextLine.trim().length() > 0) {
+                    textLength = text.length();
+                }
+            }
+            text.setLength(textLength);
+            entry = text.toString();
+            entryEnd = (nextLine != null) ? nextLineStart : lines.position;
+            return true;
+        }
+
+        private boolean readNextLine() throws IOException {
+            nextLineStart = lines.position;
+            nextLine = lines.readLine();
+            nextLineTime = (nextLine != null) ? parseTime(nextLine) : -1;
+            return nextLine != null;
+        }
+
+        private long parseTime(String line){
+            if (dateFormat != null && line.length() > 0 && line.charAt(0) != '\t') {
+                ParsePosition position = new ParsePosition(line.startsWith(EntryBuilder.JSON_TIME_FIELD) ? EntryBuilder.JSON_TIME_FIELD.length() : 0);  //JSON lines start with their date field instead of being prefixed with it
+                Date date = dateFormat.parse(line, position);
+                if (date != null && position.getErrorIndex() < 0) {
+                    return date.getTime();
+                }
+            }
+            return -1;
+        }
+
+        private void close(){
+            lines.close();
+        }
+    }
+
+    private static class LineReader {   //Reads complete lines while keeping track of the byte offset in the file
+        private final InputStream in;
+        private long position;
+        private boolean reachedEnd = false;
+        private boolean endsWithPartialLine = false;
+        private byte[] line = new byte[256];
+
+        private LineReader(String filePath, long offset) throws IOException {
+            FileInputStream fis = new FileInputStream(filePath);
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = fis.skip(offset - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            in = new BufferedInputStream(fis, 8192);
+            position = skipped;
+        }
+
+        private String readLine() throws IOException {  //null at the end of the file, which includes a last line still being written and not yet ended with a line break
+            if (reachedEnd) {
+                return null;
+            }
+            int length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    position += length + 1;
+                    return new String(line, 0, (length > 0 && line[length - 1] == '\r') ? length - 1 : length, CHARSET);
+                }
+                if (length == line.length) {
+                    byte[] larger = new byte[line.length * 2];
+                    System.arraycopy(line, 0, larger, 0, length);
+                    line = larger;
+                }
+                line[length++] = (byte) b;
+            }
+            reachedEnd = true;
+            endsWithPartialLine = length > 0;
+            return null;
+        }
+
+        private void close(){
+            try {
+                in.close();
+            } catch(Exception e){
+                Error.log(e);
+            }
+        }
+    }
+
     private static class Error{
         private static boolean log(Object message){
             return Error.log(null, message);
@@ -608,7 +2911,7 @@ public class Kat {
      */
     public static class Config{
         public static class File{
-            public static String rootDirectoryPath = DEFAULT_ROOT_DIRECTORY_PATH;   //The absolute path just before the "mainDirectoryName" which stores all Kat.scan() entries for this project. | Default: [InternalStorage]/KatScan_[AppPackageName]/
+            public static String rootDirectoryPath = null;                          //The absolute path just before the "mainDirectoryName" which stores all Kat.scan() entries for this project. Resolved by Kat.setup() in the background if left null. | Default: [InternalStorage]/KatScan_[AppPackageName]/
             public static String mainDirectoryName = DEFAULT_MAIN_DIRECTORY_NAME;   //The directory name that is created at the very end of the "rootDirectoryPath" which stores all KatScan entries for this project. | Default: "KatScan_[AppPackageName]/"
             public static String defaultFileName = DEFAULT_FILE_NAME;               //The name of the default file that Kat.scan() entries are written to if the developer does not pass in their own directory path/file to write to instead. | Default: KatScan_log
             public static String fileExtension = DEFAULT_FILE_EXTENSION;            //The file extension for all Kat.scan() files. This includes all instances including default file and user passed in files. | Default: ".txt"
@@ -619,7 +2922,7 @@ public class Kat {
             public static boolean addEntriesIntoSubdirectoryCreatedToday = true;    //To have each Kat.scan() entry written into a subfolder of the current day within "mainDirectoryName". | Default: true
 
             public static String getRootDirectoryPath(){
-                return dirOrDefault(rootDirectoryPath, DEFAULT_ROOT_DIRECTORY_PATH);
+                return dirOrDefault(rootDirectoryPath, getDefaultRootDirectoryPath());
             }
 
             public static String getMainDirectoryName(){
@@ -668,6 +2971,55 @@ public class Kat {
                 VERBOSE
             }
         }
+        public static class Index{
+            public static boolean writeTimeIndexForEveryFile = true;                                        //Keep a small sidecar file next to every Kat.scan() file mapping time buckets to where their entries start in the file, letting Kat.query() seek straight to a time range instead of reading the whole file. | Default: true
+            public static long bucketMilliseconds = DEFAULT_TIME_INDEX_BUCKET_MILLISECONDS;                 //Length of each time bucket in the time index. Smaller buckets mean less to read per Kat.query() call but a larger sidecar file. | Default: 60000 (milliseconds or 1 minute)
+            public static String fileExtension = DEFAULT_TIME_INDEX_FILE_EXTENSION;                         //Appended to the full name of the Kat.scan() file to name its time index sidecar file (KatScan_log.txt.idx). | Default: ".idx"
+        }
+        public static class Follow{
+            public static long maxBytesPerPoll = DEFAULT_FOLLOW_MAX_BYTES_PER_POLL;                         //Most bytes a single Follower.poll() call reads before returning, keeping catching up on a large file from holding up the caller. An entry larger than this is still read whole. | Default: 262144 (256 KB)
+        }
+        public static class Timing{
+            public static String fileName = DEFAULT_TIMING_FILE_NAME;                                       //Directory path/file Kat.time() and Kat.span() summaries and slow calls are written to. | Default: KatScan_timing
+            public static long summaryIntervalMilliseconds = DEFAULT_SUMMARY_INTERVAL_MILLISECONDS;         //How often a count, p50, p90, p99, and max summary is written for each name timed during the interval. | Default: 60000 (milliseconds or 1 minute)
+            public static long slowThresholdMilliseconds = DEFAULT_SLOW_THRESHOLD_MILLISECONDS;             //A single Kat.time() or Kat.span() call taking longer than this is also written on its own. Set to -1 to only write summaries. | Default: 1000 (milliseconds)
+        }
+        public static class Counting{
+            public static String fileName = DEFAULT_COUNTS_FILE_NAME;                                       //Directory path/file Kat.count() summaries are written to when no file is passed in. | Default: KatScan_counts
+            public static long summaryIntervalMilliseconds = DEFAULT_SUMMARY_INTERVAL_MILLISECONDS;         //How often a single line with the count and rate of every name counted during the interval is written to each file. | Default: 60000 (milliseconds or 1 minute)
+        }
+        public static class Exceptions{
+            public static boolean renderOnBackgroundWriter = true;                                          //Kat.scan() calls with an exception hand it over as is and have its stack trace rendered and written on a background thread, leaving the calling thread to only pay for handing it over. Entries scanned while it is still writing wait behind it to keep their order. | Default: true
+            public static int maxFramesPerThrowable = 0;                                                    //Most "at" frames written for each exception, cause, and suppressed exception in a stack trace. Set to 0 to write every frame. | Default: 0
+            public static int maxCausedByDepth = -1;                                                        //Most "Caused by" exceptions written below the scanned exception. Set to -1 to write every cause. | Default: -1
+            public static boolean compactFrames = false;                                                    //Write each stack trace frame in full only the first time it is seen in a file, into a frames sidecar file next to it, and as a short "@id" line after that. Kat.query(), Kat.follow() and katscan-merge write them back out in full. | Default: false
+            public static int maxFramesInDictionary = DEFAULT_MAX_FRAMES_IN_DICTIONARY;                     //Most frames given an id per file, frames seen after that are written in full. | Default: 5000
+            public static String frameDictionaryFileExtension = DEFAULT_FRAME_DICTIONARY_FILE_EXTENSION;    //Added to the end of a Kat.scan() file's name for its frames sidecar file. | Default: ".frames"
+        }
+        public static class StructuredEntry{
+            public static FORMAT format = FORMAT.TEXT;                                                      //How Kat.entry() entries are written. TEXT writes "message | key=value key=value" after the usual date prefix, JSON_LINES writes one JSON object per line with the date and count as fields so tools can parse it without regexes. | Default: FORMAT.TEXT
+            public enum FORMAT{                                                                             //All possible formats to define for "format" variable
+                TEXT,
+                JSON_LINES
+            }
+        }
+        public static class Shipping{
+            public static String endpointUrl = null;                                                        //HTTP(S) endpoint every finished day of KatScan files is uploaded to as gzipped POST batches with "X-KatScan-File" (path from the main directory) and "X-KatScan-Offset" headers. The application needs the android.permission.INTERNET permission. Requires "addEntriesIntoSubdirectoryCreatedToday" as files are only uploaded once their day is over. Set to null to not upload. Set it before Kat.setup() or with setEndpointUrl(), otherwise uploads only start with the next Kat.ship() call. | Default: null
+            public static long intervalMilliseconds = DEFAULT_SHIPPING_INTERVAL_MILLISECONDS;               //How often finished days are spooled and uploaded, Kat.ship() does it right away. | Default: 900000 (milliseconds or 15 minutes)
+            public static int maxBatchBytes = DEFAULT_SHIPPING_MAX_BATCH_BYTES;                             //Most bytes of a file (before compression) put into a single uploaded batch. | Default: 262144 (256 KB)
+            public static long maxBytesPerSecond = DEFAULT_SHIPPING_MAX_BYTES_PER_SECOND;                   //Most compressed bytes uploaded per second. Set to 0 to not limit. | Default: 65536 (64 KB)
+            public static long maxSpoolBytes = DEFAULT_SHIPPING_MAX_SPOOL_BYTES;                            //Most bytes of batches kept in the spool directory waiting to be uploaded, nothing more is spooled until some have been. | Default: 8388608 (8 MB)
+            public static long retryBaseMilliseconds = DEFAULT_SHIPPING_RETRY_BASE_MILLISECONDS;            //How long to wait before trying again after the first failed upload, doubling after every failure in a row. | Default: 30000 (milliseconds or 30 seconds)
+            public static long retryMaxMilliseconds = DEFAULT_SHIPPING_RETRY_MAX_MILLISECONDS;              //Longest to wait before trying again after failed uploads. | Default: 3600000 (milliseconds or 1 hour)
+            public static String spoolDirectoryName = DEFAULT_SPOOL_DIRECTORY_NAME;                         //Directory within "mainDirectoryName" batches wait in until uploaded along with how far each file has been spooled. | Default: ".KatScan_spool"
+
+            public static void setEndpointUrl(String url){                                                  //Sets "endpointUrl" and, when not null, starts uploading every "intervalMilliseconds" right away even after Kat.setup() has been called.
+                endpointUrl = url;
+                if (url != null) {
+                    Kat.Shipping.schedule();
+                }
+            }
+        }
         public static class PermissionRequest{
             public static int codeID = DEFAULT_PERMISSION_REQUEST_CODE;                                                     //The request code used when requesting KatScan needed permissions dialog for devices API 23 and higher. | Default: 65496
             public static long millisecondsPerAcceptPermissionsCheck = DEFAULT_MILLI_PER_ACCEPT_PERMISSIONS_CHECK;          //When showing the request permissions dialog a callback listener was not defined solely to not interfere with the main application. A timer is used in its place to determine if the permission has been accepted during the time to popup is on screen. This variable is how frequently the timer should check if the permission has been accepted. | Default: 1000 (milliseconds)
@@ -675,7 +3027,15 @@ public class Kat {
         }
 
         public static String spaceSeparator = DEFAULT_SPACE_SEPARATOR;      //Spacing put in between entry date and message. | Default: " - "
-        public static boolean createNewThreadForEachKatScanCall = false;    //Create a new thread for each Kat.scan() call. | Default: false
+        public static boolean createNewThreadForEachKatScanCall = false;    //Write each Kat.scan() call on a background thread from "executor" instead of the calling thread. Entries to the same file are still written in the order they were scanned. | Default: false
+        public static Executor executor = null;                             //Runs KatScan's background work (writing entries, finishing Kat.setup()) so its threads can be counted and prioritized with the rest of the application's, such as an app-wide IO pool or Executors.newVirtualThreadPerTaskExecutor(). Set to null to use a single KatScan thread, started the first time there is something to write in the background. | Default: null
+        public static int maxPendingEntriesPerFile = DEFAULT_MAX_PENDING_ENTRIES_PER_FILE;     //Most entries waiting to be written in the background to a single file before "pendingEntriesPolicy" applies. Set to 0 to not limit. | Default: 10000
+        public static PENDING_ENTRIES_POLICY pendingEntriesPolicy = PENDING_ENTRIES_POLICY.BLOCK;   //What Kat.scan() does when "maxPendingEntriesPerFile" entries are already waiting. BLOCK makes room by writing the waiting entries on the calling thread so nothing is lost, only waiting for an entry another thread is writing at that moment. DROP does not write the entry and notes how many were not once there is room. | Default: PENDING_ENTRIES_POLICY.BLOCK
+        public enum PENDING_ENTRIES_POLICY{                                 //All possible policies to define for "pendingEntriesPolicy" variable
+            BLOCK,
+            DROP
+        }
+        public static int maxEntriesHeldDuringSetup = DEFAULT_MAX_ENTRIES_HELD_DURING_SETUP;   //Kat.setup() finishes in the background, Kat.scan() entries made before then are held in memory and written once it has. If more are made the oldest are not written. | Default: 1000
 
         /**
          * If the "enableKatScanRegardlessIfRunningInDebug" variable has manually been set to true